@@ -0,0 +1,142 @@
+package com.example.onedriveexplorer;
+
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.annotation.UiThreadTest;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.example.onedriveexplorer.models.DriveItem;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Per-holder cost of FileAdapter on a device: creating a row, binding one (through the
+ * CompactListing the adapter holds, as when scrolling) and picking its icon.
+ * Run with ./gradlew :app:connectedBenchmarkAndroidTest; androidx.benchmark writes the
+ * results as JSON next to the test output, so runs on different commits can be compared.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FileAdapterBenchmark {
+    private static final int ITEMS = 1000;
+    private static final String[] MIME_TYPES = {
+            null, "application/pdf", "image/jpeg", "video/mp4", "text/plain",
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+    };
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final List<DriveItem> items = items();
+
+    @Test
+    @UiThreadTest
+    public void bindListRow() {
+        bind(false);
+    }
+
+    @Test
+    @UiThreadTest
+    public void bindGridCard() {
+        bind(true);
+    }
+
+    @Test
+    @UiThreadTest
+    public void createListRow() {
+        create(false);
+    }
+
+    @Test
+    @UiThreadTest
+    public void createGridCard() {
+        create(true);
+    }
+
+    @Test
+    public void iconResId() {
+        BenchmarkState state = benchmarkRule.getState();
+        int i = 0;
+        int sink = 0;
+        while (state.keepRunning()) {
+            DriveItem item = items.get(i++ % ITEMS);
+            sink += FileAdapter.getIconResId(item.isDirectory(), item.file != null ? item.file.mimeType : null);
+        }
+        if (sink == 42) throw new AssertionError();  // keeps the loop from being optimized away
+    }
+
+    // ===== Helpers =====
+
+    private void bind(boolean grid) {
+        RecyclerView parent = parent();
+        FileAdapter adapter = adapter(grid);
+        RecyclerView.ViewHolder holder = adapter.onCreateViewHolder(parent, adapter.getItemViewType(0));
+        BenchmarkState state = benchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            adapter.onBindViewHolder(holder, i++ % ITEMS);
+        }
+    }
+
+    private void create(boolean grid) {
+        RecyclerView parent = parent();
+        FileAdapter adapter = adapter(grid);
+        int viewType = adapter.getItemViewType(0);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            adapter.onCreateViewHolder(parent, viewType);
+        }
+    }
+
+    private FileAdapter adapter(boolean grid) {
+        FileAdapter adapter = new FileAdapter(new FileAdapter.OnItemClickListener() {
+            @Override
+            public void onItemClick(DriveItem item) {
+            }
+
+            @Override
+            public void onItemLongClick(DriveItem item, android.view.View view) {
+            }
+        });
+        adapter.setGridView(grid);
+        adapter.setItems(items);
+        return adapter;
+    }
+
+    // Rows are inflated against a RecyclerView so they get its layout params, as in the app
+    private static RecyclerView parent() {
+        Context context = new ContextThemeWrapper(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(), R.style.Theme_OneDriveExplorer);
+        RecyclerView parent = new RecyclerView(context);
+        parent.setLayoutManager(new LinearLayoutManager(context));
+        return parent;
+    }
+
+    private static List<DriveItem> items() {
+        List<DriveItem> items = new ArrayList<>(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            DriveItem item = new DriveItem();
+            item.id = "01BENCH" + i;
+            item.size = i * 7919L;
+            item.lastModifiedDateTime = "2024-05-01T09:30:00.123Z";
+            String mime = MIME_TYPES[i % MIME_TYPES.length];
+            if (mime == null) {
+                item.name = "Folder " + i;
+                item.folder = new DriveItem.Folder();
+                item.folder.childCount = i % 50;
+            } else {
+                item.name = "File " + i;
+                item.file = new DriveItem.File();
+                item.file.mimeType = mime;
+            }
+            items.add(item);
+        }
+        return items;
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.onedriveexplorer.fakegraph;
+
+import com.example.onedriveexplorer.models.DriveItem;
+import com.example.onedriveexplorer.models.GraphDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory drive behind FakeGraphServer, with builders for the shapes load tests need
+ * (deep trees, huge folders) and a change log for delta queries. Thread-safe.
+ *
+ * Items are never modified once stored: a change replaces the item with a copy, so the
+ * server can serialize what it got from here without holding the lock.
+ */
+public class FakeDrive {
+    public static final String ROOT_ID = "FAKEROOT";
+    private static final String DRIVE_ID = "b!fakedrive";
+    private static final long EPOCH = GraphDateTime.parse("2024-01-01T00:00:00Z");
+
+    private final Map<String, DriveItem> items = new HashMap<>();
+    private final Map<String, List<String>> children = new HashMap<>();
+    private final Map<String, Integer> folderVersions = new HashMap<>();
+    // Every change in order; a delta token is an index into it
+    private final List<DriveItem> changes = new ArrayList<>();
+    private int nextId;
+
+    public FakeDrive() {
+        DriveItem root = new DriveItem();
+        root.id = ROOT_ID;
+        root.name = "root";
+        root.folder = new DriveItem.Folder();
+        root.root = new DriveItem.Root();
+        items.put(ROOT_ID, root);
+        children.put(ROOT_ID, new ArrayList<>());
+        folderVersions.put(ROOT_ID, 0);
+    }
+
+    // ===== Builders =====
+
+    public synchronized DriveItem addFolder(String parentId, String name) {
+        DriveItem item = newItem(parentId, name);
+        item.folder = new DriveItem.Folder();
+        children.put(item.id, new ArrayList<>());
+        folderVersions.put(item.id, 0);
+        return add(item);
+    }
+
+    public synchronized DriveItem addFile(String parentId, String name, long size, String mimeType) {
+        DriveItem item = newItem(parentId, name);
+        item.size = size;
+        item.file = new DriveItem.File();
+        item.file.mimeType = mimeType;
+        return add(item);
+    }
+
+    /**
+     * A chain of depth nested folders under parentId, each also holding siblings empty
+     * folders and files files. Returns the chain, outermost first.
+     */
+    public synchronized List<DriveItem> addDeepTree(String parentId, int depth, int siblings, int files) {
+        List<DriveItem> chain = new ArrayList<>(depth);
+        String parent = parentId;
+        for (int level = 0; level < depth; level++) {
+            DriveItem folder = addFolder(parent, String.format(Locale.ROOT, "Level %03d", level));
+            for (int i = 0; i < siblings; i++) {
+                addFolder(folder.id, String.format(Locale.ROOT, "Side %03d-%03d", level, i));
+            }
+            for (int i = 0; i < files; i++) {
+                addFile(folder.id, String.format(Locale.ROOT, "Note %03d-%03d.txt", level, i), 1024 + i, "text/plain");
+            }
+            chain.add(folder);
+            parent = folder.id;
+        }
+        return chain;
+    }
+
+    /**
+     * A folder with count files of mixed types
+     */
+    public synchronized DriveItem addHugeFolder(String parentId, String name, int count) {
+        String[][] kinds = {
+                {"jpg", "image/jpeg"}, {"pdf", "application/pdf"}, {"txt", "text/plain"}, {"mp4", "video/mp4"},
+        };
+        DriveItem folder = addFolder(parentId, name);
+        for (int i = 0; i < count; i++) {
+            String[] kind = kinds[i % kinds.length];
+            addFile(folder.id, String.format(Locale.ROOT, "File %06d.%s", i, kind[0]), 4096L * (i % 1000 + 1), kind[1]);
+        }
+        return folder;
+    }
+
+    // ===== Server side =====
+
+    synchronized DriveItem get(String id) {
+        return items.get(id);
+    }
+
+    /**
+     * Children in insertion order, or null if id is not a folder
+     */
+    synchronized List<DriveItem> list(String folderId) {
+        List<String> ids = children.get(folderId);
+        if (ids == null) return null;
+        List<DriveItem> result = new ArrayList<>(ids.size());
+        for (String id : ids) result.add(items.get(id));
+        return result;
+    }
+
+    /**
+     * Changes with every change to the folder's children, for ETag / If-None-Match
+     */
+    synchronized String etag(String folderId) {
+        return "\"{" + folderId + "},c" + folderVersions.get(folderId) + "\"";
+    }
+
+    /**
+     * Null if the parent doesn't exist; throws IllegalStateException if the name is taken
+     */
+    synchronized DriveItem createFolder(String parentId, String name) {
+        List<String> siblings = children.get(parentId);
+        if (siblings == null) return null;
+        for (String id : siblings) {
+            if (items.get(id).name.equalsIgnoreCase(name)) throw new IllegalStateException(name);
+        }
+        return addFolder(parentId, name);
+    }
+
+    synchronized DriveItem rename(String id, String name) {
+        DriveItem old = items.get(id);
+        if (old == null || ROOT_ID.equals(id)) return null;
+        DriveItem item = copy(old);
+        item.name = name;
+        item.eTag = tag(id, version(old.eTag) + 1);
+        item.lastModifiedDateTime = GraphDateTime.format(EPOCH + changes.size() * 1000L);
+        items.put(id, item);
+        bumpFolder(item.getParentId());
+        changes.add(item);
+        return item;
+    }
+
+    /**
+     * Removes the item and everything under it; false if it doesn't exist
+     */
+    synchronized boolean delete(String id) {
+        DriveItem item = items.get(id);
+        if (item == null || ROOT_ID.equals(id)) return false;
+        removeTree(id);
+        String parentId = item.getParentId();
+        children.get(parentId).remove(id);
+        setChildCount(parentId);
+        bumpFolder(parentId);
+        return true;
+    }
+
+    synchronized int deltaToken() {
+        return changes.size();
+    }
+
+    /**
+     * Changes after token, or null if token is not one this drive handed out
+     */
+    synchronized List<DriveItem> changesSince(int token) {
+        if (token < 0 || token > changes.size()) return null;
+        return new ArrayList<>(changes.subList(token, changes.size()));
+    }
+
+    synchronized List<DriveItem> search(String query) {
+        String needle = query.toLowerCase(Locale.ROOT);
+        List<DriveItem> result = new ArrayList<>();
+        for (DriveItem item : items.values()) {
+            if (item.root == null && item.name.toLowerCase(Locale.ROOT).contains(needle)) result.add(item);
+        }
+        return result;
+    }
+
+    // ===== Helpers =====
+
+    private DriveItem newItem(String parentId, String name) {
+        if (!children.containsKey(parentId)) throw new IllegalArgumentException("Not a folder: " + parentId);
+        DriveItem item = new DriveItem();
+        item.id = String.format(Locale.ROOT, "FAKE%08X", nextId++);
+        item.name = name;
+        item.eTag = tag(item.id, 1);
+        item.cTag = "\"c:{" + item.id + "},1\"";
+        item.lastModifiedDateTime = GraphDateTime.format(EPOCH + nextId * 1000L);
+        item.parentReference = new DriveItem.ItemReference();
+        item.parentReference.id = parentId;
+        item.parentReference.driveId = DRIVE_ID;
+        return item;
+    }
+
+    private DriveItem add(DriveItem item) {
+        String parentId = item.getParentId();
+        items.put(item.id, item);
+        children.get(parentId).add(item.id);
+        setChildCount(parentId);
+        bumpFolder(parentId);
+        changes.add(item);
+        return item;
+    }
+
+    private void removeTree(String id) {
+        List<String> ids = children.remove(id);
+        if (ids != null) {
+            for (String child : ids) removeTree(child);
+            folderVersions.remove(id);
+        }
+        DriveItem gone = copy(items.remove(id));
+        gone.deleted = new DriveItem.Deleted();
+        gone.deleted.state = "deleted";
+        changes.add(gone);
+    }
+
+    private void setChildCount(String folderId) {
+        DriveItem folder = copy(items.get(folderId));
+        folder.folder = new DriveItem.Folder();
+        folder.folder.childCount = children.get(folderId).size();
+        items.put(folderId, folder);
+    }
+
+    private void bumpFolder(String folderId) {
+        folderVersions.put(folderId, folderVersions.get(folderId) + 1);
+    }
+
+    private static String tag(String id, int version) {
+        return "\"{" + id + "}," + version + "\"";
+    }
+
+    private static int version(String etag) {
+        return Integer.parseInt(etag.substring(etag.lastIndexOf(',') + 1, etag.length() - 1));
+    }
+
+    // Shallow, but the nested objects it shares are never modified either
+    private static DriveItem copy(DriveItem source) {
+        DriveItem item = new DriveItem();
+        item.id = source.id;
+        item.name = source.name;
+        item.size = source.size;
+        item.folder = source.folder;
+        item.file = source.file;
+        item.eTag = source.eTag;
+        item.cTag = source.cTag;
+        item.lastModifiedDateTime = source.lastModifiedDateTime;
+        item.parentReference = source.parentReference;
+        item.root = source.root;
+        return item;
+    }
+}
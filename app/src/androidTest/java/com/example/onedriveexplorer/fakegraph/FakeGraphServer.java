@@ -0,0 +1,373 @@
+package com.example.onedriveexplorer.fakegraph;
+
+import android.text.TextUtils;
+import com.example.onedriveexplorer.models.BatchRequest;
+import com.example.onedriveexplorer.models.BatchResponse;
+import com.example.onedriveexplorer.models.DriveItem;
+import com.example.onedriveexplorer.models.DriveItemResponse;
+import com.example.onedriveexplorer.models.TokenResponse;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * Graph and token server in the test process, serving a FakeDrive over MockWebServer.
+ * Covers the endpoints the app calls: paged children with ETags, item get/rename/delete,
+ * create folder, delta, search, $batch and /token. Thumbnails and anything else get 404.
+ *
+ * Conditions make it behave like a bad network or a busy service: latency before each
+ * response, a bandwidth cap on bodies, 429s with Retry-After, and access tokens that
+ * expire early. They can be changed between (or during) scenarios.
+ */
+public class FakeGraphServer extends Dispatcher {
+    private static final int DEFAULT_PAGE_SIZE = 200;
+    private static final int MAX_PAGE_SIZE = 999;
+    private static final String API = "/v1.0";
+    private static final Pattern ITEM = Pattern.compile("/v1\\.0/me/drive/items/([^/]+)(/children)?");
+    private static final Pattern SEARCH = Pattern.compile("/v1\\.0/me/drive/root/search\\(q='(.*)'\\)");
+
+    /**
+     * How the server misbehaves; all off by default
+     */
+    public static class Conditions {
+        long latencyMs;
+        long bytesPerSecond;
+        int throttleEvery;
+        int retryAfterSeconds = 1;
+        long tokenLifetimeMs;
+
+        /**
+         * Delay before the response headers of every request
+         */
+        public Conditions latency(long millis) {
+            latencyMs = millis;
+            return this;
+        }
+
+        /**
+         * Cap on response body throughput
+         */
+        public Conditions bandwidth(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Every nth Graph request gets 429 Too Many Requests with Retry-After
+         */
+        public Conditions throttle(int every, int retryAfterSeconds) {
+            throttleEvery = every;
+            this.retryAfterSeconds = retryAfterSeconds;
+            return this;
+        }
+
+        /**
+         * Tokens are rejected with 401 this long after being issued, whatever expires_in said
+         */
+        public Conditions tokenLifetime(long millis) {
+            tokenLifetimeMs = millis;
+            return this;
+        }
+    }
+
+    private final FakeDrive drive;
+    private final MockWebServer server = new MockWebServer();
+    private final Gson gson = new Gson();
+    // Access token -> when it was issued
+    private final Map<String, Long> tokens = new ConcurrentHashMap<>();
+    private final AtomicInteger graphRequests = new AtomicInteger();
+    private final AtomicInteger throttled = new AtomicInteger();
+    private final AtomicInteger rejectedTokens = new AtomicInteger();
+    private final AtomicInteger tokensIssued = new AtomicInteger();
+    private volatile Conditions conditions = new Conditions();
+    private String baseUrl;
+
+    public FakeGraphServer(FakeDrive drive) {
+        this.drive = drive;
+    }
+
+    /**
+     * Binds a local port; not on the main thread
+     */
+    public void start() throws IOException {
+        server.setDispatcher(this);
+        server.start();
+        baseUrl = server.url("/").toString();
+    }
+
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * Root URL for OneDriveClient.init(), as both the Graph and the token server
+     */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public void setConditions(Conditions conditions) {
+        this.conditions = conditions;
+    }
+
+    public void resetCounters() {
+        graphRequests.set(0);
+        throttled.set(0);
+        rejectedTokens.set(0);
+        tokensIssued.set(0);
+    }
+
+    public int getRequestCount() {
+        return graphRequests.get();
+    }
+
+    public int getThrottledCount() {
+        return throttled.get();
+    }
+
+    public int getRejectedTokenCount() {
+        return rejectedTokens.get();
+    }
+
+    public int getTokensIssued() {
+        return tokensIssued.get();
+    }
+
+    // ===== Dispatch =====
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+        Conditions c = conditions;
+        HttpUrl url = request.getRequestUrl();
+        String path = "/" + TextUtils.join("/", url.pathSegments());
+        MockResponse response;
+        if (path.equals("/token")) {
+            response = issueToken();
+        } else if ("HEAD".equals(request.getMethod())) {
+            // OneDriveClient's connection pre-warm
+            response = new MockResponse();
+        } else {
+            int n = graphRequests.incrementAndGet();
+            if (c.throttleEvery > 0 && n % c.throttleEvery == 0) {
+                throttled.incrementAndGet();
+                response = error(429, "TooManyRequests", "Please retry after " + c.retryAfterSeconds + " seconds")
+                        .setHeader("Retry-After", String.valueOf(c.retryAfterSeconds));
+            } else if (!authorized(request.getHeader("Authorization"), c)) {
+                rejectedTokens.incrementAndGet();
+                response = error(401, "InvalidAuthenticationToken", "Access token has expired or is not yet valid");
+            } else {
+                response = route(request.getMethod(), url, path, request.getBody().readUtf8(),
+                        request.getHeader("If-None-Match"));
+            }
+        }
+
+        if (c.latencyMs > 0) response.setHeadersDelay(c.latencyMs, TimeUnit.MILLISECONDS);
+        // Ten slices a second keeps the stream smooth enough for batch-by-batch parsing
+        if (c.bytesPerSecond > 0) response.throttleBody(Math.max(1, c.bytesPerSecond / 10), 100, TimeUnit.MILLISECONDS);
+        return response;
+    }
+
+    private MockResponse route(String method, HttpUrl url, String path, String body, String ifNoneMatch) {
+        if (path.equals(API + "/me/drive/root/children")) {
+            return "GET".equals(method) ? list(FakeDrive.ROOT_ID, url, ifNoneMatch) : notFound();
+        }
+        if (path.equals(API + "/me/drive/root/delta")) return delta(url);
+        if (path.equals(API + "/$batch") && "POST".equals(method)) return batch(body);
+
+        Matcher m = SEARCH.matcher(path);
+        if (m.matches()) return page(drive.search(m.group(1)), url);
+
+        m = ITEM.matcher(path);
+        if (!m.matches()) return notFound();
+        String id = "root".equals(m.group(1)) ? FakeDrive.ROOT_ID : m.group(1);
+        boolean children = m.group(2) != null;
+        if (children && "GET".equals(method)) return list(id, url, ifNoneMatch);
+        if (children && "POST".equals(method)) return createFolder(id, body);
+        if (children) return notFound();
+        switch (method) {
+            case "GET":
+                DriveItem item = drive.get(id);
+                return item != null ? json(200, item) : notFound();
+            case "PATCH":
+                return rename(id, body);
+            case "DELETE":
+                return drive.delete(id) ? new MockResponse().setResponseCode(204) : notFound();
+            default:
+                return notFound();
+        }
+    }
+
+    // ===== Endpoints =====
+
+    private MockResponse issueToken() {
+        TokenResponse token = new TokenResponse();
+        token.accessToken = "fake-token-" + tokensIssued.incrementAndGet();
+        token.tokenType = "Bearer";
+        token.expiresIn = 3600;
+        tokens.put(token.accessToken, System.currentTimeMillis());
+        return json(200, token);
+    }
+
+    private boolean authorized(String header, Conditions c) {
+        if (header == null || !header.startsWith("Bearer ")) return false;
+        Long issuedAt = tokens.get(header.substring("Bearer ".length()));
+        if (issuedAt == null) return false;
+        return c.tokenLifetimeMs <= 0 || System.currentTimeMillis() - issuedAt < c.tokenLifetimeMs;
+    }
+
+    /**
+     * Children of a folder. Only the first page is conditional, like Graph's.
+     */
+    private MockResponse list(String folderId, HttpUrl url, String ifNoneMatch) {
+        List<DriveItem> all = drive.list(folderId);
+        if (all == null) return notFound();
+        String etag = drive.etag(folderId);
+        if (url.queryParameter("$skiptoken") == null && etag.equals(ifNoneMatch)) {
+            return new MockResponse().setResponseCode(304).setHeader("ETag", etag);
+        }
+        return page(all, url).setHeader("ETag", etag);
+    }
+
+    // $top / $skiptoken paging; the skip token is simply an offset
+    private MockResponse page(List<DriveItem> all, HttpUrl url) {
+        int top = intParameter(url, "$top", DEFAULT_PAGE_SIZE);
+        top = Math.max(1, Math.min(top, MAX_PAGE_SIZE));
+        int skip = intParameter(url, "$skiptoken", 0);
+        if (skip < 0 || skip > all.size()) return error(400, "invalidRequest", "Invalid skip token");
+
+        DriveItemResponse response = new DriveItemResponse();
+        int end = Math.min(all.size(), skip + top);
+        response.value = new ArrayList<>(all.subList(skip, end));
+        if (end < all.size()) {
+            response.nextLink = url.newBuilder()
+                    .setQueryParameter("$top", String.valueOf(top))
+                    .setQueryParameter("$skiptoken", String.valueOf(end))
+                    .build().toString();
+        }
+        return json(200, response);
+    }
+
+    /**
+     * token=latest gives just a deltaLink; a token from one of those gives the changes since
+     */
+    private MockResponse delta(HttpUrl url) {
+        String token = url.queryParameter("token");
+        DriveItemResponse response = new DriveItemResponse();
+        if (token == null || "latest".equals(token)) {
+            response.value = new ArrayList<>();
+        } else {
+            List<DriveItem> changes;
+            try {
+                changes = drive.changesSince(Integer.parseInt(token));
+            } catch (NumberFormatException e) {
+                changes = null;
+            }
+            if (changes == null) return error(410, "resyncRequired", "Resync required");
+            response.value = changes;
+        }
+        response.deltaLink = url.newBuilder()
+                .setQueryParameter("token", String.valueOf(drive.deltaToken()))
+                .build().toString();
+        return json(200, response);
+    }
+
+    private MockResponse createFolder(String parentId, String body) {
+        DriveItem request = parse(body, DriveItem.class);
+        if (request == null || request.name == null) return error(400, "invalidRequest", "Missing name");
+        try {
+            DriveItem created = drive.createFolder(parentId, request.name);
+            return created != null ? json(201, created) : notFound();
+        } catch (IllegalStateException e) {
+            return error(409, "nameAlreadyExists", "An item with the same name already exists");
+        }
+    }
+
+    private MockResponse rename(String id, String body) {
+        DriveItem request = parse(body, DriveItem.class);
+        if (request == null || request.name == null) return error(400, "invalidRequest", "Only renames are supported");
+        DriveItem renamed = drive.rename(id, request.name);
+        return renamed != null ? json(200, renamed) : notFound();
+    }
+
+    /**
+     * Runs each sub-request through route(); urls in a batch are relative to the API version
+     */
+    private MockResponse batch(String body) {
+        BatchRequest request = parse(body, BatchRequest.class);
+        if (request == null || request.requests == null) return error(400, "invalidRequest", "Malformed batch");
+
+        BatchResponse response = new BatchResponse();
+        response.responses = new ArrayList<>();
+        for (BatchRequest.Request sub : request.requests) {
+            HttpUrl url = HttpUrl.get(baseUrl).resolve(API.substring(1) + sub.url);
+            String subBody = sub.body != null ? gson.toJson(sub.body) : "";
+            MockResponse result = route(sub.method, url, "/" + TextUtils.join("/", url.pathSegments()), subBody, null);
+
+            BatchResponse.Response r = new BatchResponse.Response();
+            r.id = sub.id;
+            r.status = Integer.parseInt(result.getStatus().split(" ")[1]);
+            r.headers = new HashMap<>();
+            Buffer content = result.getBody();
+            if (content != null && content.size() > 0) r.body = new JsonParser().parse(content.readUtf8());
+            response.responses.add(r);
+        }
+        return json(200, response);
+    }
+
+    // ===== Helpers =====
+
+    private MockResponse json(int code, Object body) {
+        return new MockResponse()
+                .setResponseCode(code)
+                .setHeader("Content-Type", "application/json")
+                .setBody(gson.toJson(body));
+    }
+
+    private MockResponse error(int code, String graphCode, String message) {
+        JsonObject inner = new JsonObject();
+        inner.addProperty("code", graphCode);
+        inner.addProperty("message", message);
+        JsonObject error = new JsonObject();
+        error.add("error", inner);
+        return json(code, error);
+    }
+
+    private MockResponse notFound() {
+        return error(404, "itemNotFound", "The resource could not be found");
+    }
+
+    private <T> T parse(String body, Class<T> type) {
+        try {
+            return gson.fromJson(body, type);
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+
+    private static int intParameter(HttpUrl url, String name, int fallback) {
+        String value = url.queryParameter(name);
+        if (value == null) return fallback;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.example.onedriveexplorer.fakegraph;
+
+import android.app.Instrumentation;
+import android.os.Bundle;
+import android.util.Log;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.example.onedriveexplorer.models.DriveItem;
+import com.example.onedriveexplorer.navigation.NavigationManager;
+import com.example.onedriveexplorer.network.OneDriveClient;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * End-to-end scenarios: a real NavigationManager, OkHttp stack and parser against
+ * FakeGraphServer, so load and latency behaviour can be measured repeatably without an
+ * account or a network. Each scenario reports its timings to logcat (tag GraphScenario) and
+ * to the instrumentation output:
+ *
+ *   ./gradlew :app:connectedBenchmarkAndroidTest \
+ *       -Pandroid.testInstrumentationRunnerArguments.class=com.example.onedriveexplorer.fakegraph.GraphScenarioTest
+ *
+ * OneDriveClient is initialized once per process, so these can't share a run with anything
+ * that talks to the real Graph.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GraphScenarioTest {
+    private static final String TAG = "GraphScenario";
+    private static final long TIMEOUT_MS = 60_000;
+    private static final int HUGE_FOLDER_ITEMS = 20_000;
+    private static final int MEDIUM_FOLDER_ITEMS = 2_000;
+    private static final int TREE_DEPTH = 25;
+
+    private static FakeDrive drive;
+    private static FakeGraphServer server;
+    private static DriveItem hugeFolder;
+    private static DriveItem mediumFolder;
+    private static List<DriveItem> deepChain;
+
+    private final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+    private Driver driver;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        drive = new FakeDrive();
+        hugeFolder = drive.addHugeFolder(FakeDrive.ROOT_ID, "Huge", HUGE_FOLDER_ITEMS);
+        mediumFolder = drive.addHugeFolder(FakeDrive.ROOT_ID, "Medium", MEDIUM_FOLDER_ITEMS);
+        deepChain = drive.addDeepTree(FakeDrive.ROOT_ID, TREE_DEPTH, 5, 20);
+        server = new FakeGraphServer(drive);
+        server.start();
+        String url = server.getBaseUrl();
+        OneDriveClient.init(InstrumentationRegistry.getInstrumentation().getTargetContext(), url, url);
+    }
+
+    @AfterClass
+    public static void stopServer() throws IOException {
+        server.shutdown();
+    }
+
+    @After
+    public void tearDown() {
+        if (driver != null) instrumentation.runOnMainSync(() -> driver.nav.cancelAll());
+        server.setConditions(new FakeGraphServer.Conditions());
+    }
+
+    // ===== Scenarios =====
+
+    /**
+     * Open a folder of 20k items and page through all of it
+     */
+    @Test
+    public void hugeFolderPagedToEnd() {
+        driver = start(new FakeGraphServer.Conditions());
+        long opened = System.nanoTime();
+        onMain(() -> driver.nav.navigateTo(hugeFolder));
+        Event first = driver.await(Kind.SUCCESS);
+        Event complete = first.complete ? first : driver.awaitComplete();
+
+        int items = complete.count;
+        int pages = 1;
+        while (onMain(() -> driver.nav.hasMorePages())) {
+            onMain(() -> driver.nav.loadNextPage());
+            items += driver.await(Kind.PAGE).count;
+            pages++;
+        }
+        long totalMs = millisSince(opened);
+
+        assertEquals(HUGE_FOLDER_ITEMS, items);
+        report("hugeFolderPagedToEnd",
+                "firstItemsMs", millis(opened, first.at),
+                "firstPageMs", millis(opened, complete.at),
+                "allPagesMs", totalMs,
+                "pages", pages,
+                "itemsPerSecond", items * 1000L / Math.max(1, totalMs),
+                "requests", server.getRequestCount());
+    }
+
+    /**
+     * Walk 25 levels down from the network, back up from the cache, and down again
+     */
+    @Test
+    public void deepTreeWalk() {
+        driver = start(new FakeGraphServer.Conditions().latency(50));
+        long down = walkDown(false);
+        long up = walkUp();
+        long downAgain = walkDown(true);
+
+        report("deepTreeWalk",
+                "levels", TREE_DEPTH,
+                "networkPerLevelMs", down / TREE_DEPTH,
+                "backPerLevelMs", up / TREE_DEPTH,
+                "cachedPerLevelMs", downAgain / TREE_DEPTH,
+                "requests", server.getRequestCount());
+    }
+
+    /**
+     * A large first page over a slow link: the first rows should show well before the page ends
+     */
+    @Test
+    public void slowNetworkStreaming() {
+        driver = start(new FakeGraphServer.Conditions());
+        onMain(() -> driver.nav.setPageSize(999));
+        server.setConditions(new FakeGraphServer.Conditions().latency(300).bandwidth(64 * 1024));
+
+        long opened = System.nanoTime();
+        onMain(() -> driver.nav.navigateTo(mediumFolder));
+        Event first = driver.await(Kind.SUCCESS);
+        Event complete = first.complete ? first : driver.awaitComplete();
+
+        assertEquals(999, complete.count);
+        assertTrue("first rows only after the whole page", first.count < complete.count);
+        report("slowNetworkStreaming",
+                "firstItemsMs", millis(opened, first.at),
+                "firstItems", first.count,
+                "pageMs", millis(opened, complete.at),
+                "pageItems", complete.count);
+    }
+
+    /**
+     * Every third request is throttled. RequestScheduler should absorb that; a listing that
+     * still fails is retried once Retry-After has passed, as a user pulling to refresh would,
+     * and counted in errorsSeen.
+     */
+    @Test
+    public void throttledWalk() {
+        driver = start(new FakeGraphServer.Conditions());
+        server.setConditions(new FakeGraphServer.Conditions().throttle(3, 1));
+        server.resetCounters();
+
+        long started = System.nanoTime();
+        int errors = 0;
+        for (DriveItem folder : deepChain) {
+            onMain(() -> driver.nav.navigateTo(folder));
+            while (true) {
+                Event event = driver.awaitCompleteOrError();
+                if (event.kind == Kind.SUCCESS) break;
+                errors++;
+                sleep(1000);
+                onMain(() -> driver.nav.refresh());
+            }
+        }
+        long totalMs = millisSince(started);
+
+        report("throttledWalk",
+                "levels", TREE_DEPTH,
+                "totalMs", totalMs,
+                "throttled", server.getThrottledCount(),
+                "errorsSeen", errors,
+                "requests", server.getRequestCount());
+    }
+
+    /**
+     * Tokens die after 1.5 s; with pauses between folders every few listings hit a 401,
+     * which must be recovered by a refresh and replay without the UI seeing an error
+     */
+    @Test
+    public void tokenExpiry() {
+        driver = start(new FakeGraphServer.Conditions());
+        server.setConditions(new FakeGraphServer.Conditions().tokenLifetime(1500));
+        server.resetCounters();
+
+        long started = System.nanoTime();
+        for (DriveItem folder : deepChain.subList(0, 8)) {
+            sleep(500);
+            onMain(() -> driver.nav.navigateTo(folder));
+            Event event = driver.awaitCompleteOrError();
+            assertEquals("listing failed: " + event.message, Kind.SUCCESS, event.kind);
+        }
+
+        assertTrue("no token was refreshed", server.getTokensIssued() > 0);
+        report("tokenExpiry",
+                "totalMs", millisSince(started),
+                "rejected401", server.getRejectedTokenCount(),
+                "tokensIssued", server.getTokensIssued(),
+                "requests", server.getRequestCount());
+    }
+
+    // ===== Walking =====
+
+    private long walkDown(boolean expectCached) {
+        long started = System.nanoTime();
+        for (DriveItem folder : deepChain) {
+            onMain(() -> driver.nav.navigateTo(folder));
+            Event event = driver.awaitComplete();
+            if (expectCached) assertTrue(folder.name + " not cached", event.fromCache);
+        }
+        return millisSince(started);
+    }
+
+    private long walkUp() {
+        long started = System.nanoTime();
+        for (int i = 0; i < TREE_DEPTH; i++) {
+            onMain(() -> driver.nav.goBack());
+            assertTrue("back went to the network", driver.awaitComplete().fromCache);
+        }
+        return millisSince(started);
+    }
+
+    // ===== Driver =====
+
+    private enum Kind { SUCCESS, PAGE, ERROR }
+
+    private static class Event {
+        final Kind kind;
+        final int count;
+        final boolean fromCache;
+        // The folder's first page is fully loaded, not just a streamed batch
+        final boolean complete;
+        final String message;
+        final long at = System.nanoTime();
+
+        Event(Kind kind, int count, boolean fromCache, boolean complete, String message) {
+            this.kind = kind;
+            this.count = count;
+            this.fromCache = fromCache;
+            this.complete = complete;
+            this.message = message;
+        }
+    }
+
+    /**
+     * A NavigationManager on the main thread whose callbacks are queued for the test thread
+     */
+    private static class Driver implements NavigationManager.Callback {
+        final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+        NavigationManager nav;
+
+        @Override
+        public void onSuccess(List<DriveItem> items, boolean fromCache) {
+            events.add(new Event(Kind.SUCCESS, items.size(), fromCache, nav.getCurrentNode().isCached(), null));
+        }
+
+        @Override
+        public void onPageLoaded(List<DriveItem> items) {
+            events.add(new Event(Kind.PAGE, items.size(), false, false, null));
+        }
+
+        @Override
+        public void onError(String message) {
+            events.add(new Event(Kind.ERROR, 0, false, false, message));
+        }
+
+        @Override
+        public void onLoading() {
+        }
+
+        Event await(Kind kind) {
+            while (true) {
+                Event event = next();
+                if (event.kind == kind) return event;
+                assertTrue("unexpected error: " + event.message, event.kind != Kind.ERROR);
+            }
+        }
+
+        Event awaitComplete() {
+            Event event = awaitCompleteOrError();
+            assertEquals("unexpected error: " + event.message, Kind.SUCCESS, event.kind);
+            return event;
+        }
+
+        // Streamed batches of the page are skipped
+        Event awaitCompleteOrError() {
+            while (true) {
+                Event event = next();
+                if (event.kind == Kind.ERROR || (event.kind == Kind.SUCCESS && event.complete)) return event;
+            }
+        }
+
+        private Event next() {
+            try {
+                Event event = events.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                assertNotNull("timed out", event);
+                return event;
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    /**
+     * A fresh NavigationManager with its root loaded, and the server's counters reset
+     */
+    private Driver start(FakeGraphServer.Conditions conditions) {
+        server.setConditions(conditions);
+        Driver d = new Driver();
+        onMain(() -> {
+            DriveItem root = new DriveItem();
+            root.id = "root";
+            root.name = "OneDrive";
+            root.folder = new DriveItem.Folder();
+            d.nav = new NavigationManager(root, OneDriveClient.getService());
+            d.nav.setCallback(d);
+            d.nav.init();
+        });
+        d.awaitComplete();
+        server.resetCounters();
+        return d;
+    }
+
+    // ===== Helpers =====
+
+    private void onMain(Runnable action) {
+        instrumentation.runOnMainSync(action);
+    }
+
+    private <T> T onMain(Supplier<T> action) {
+        AtomicReference<T> result = new AtomicReference<>();
+        instrumentation.runOnMainSync(() -> result.set(action.get()));
+        return result.get();
+    }
+
+    /**
+     * Name/value pairs to logcat and the instrumentation status
+     */
+    private void report(String scenario, Object... pairs) {
+        StringBuilder sb = new StringBuilder(scenario);
+        Bundle status = new Bundle();
+        for (int i = 0; i < pairs.length; i += 2) {
+            sb.append(' ').append(pairs[i]).append('=').append(pairs[i + 1]);
+            status.putString(scenario + "." + pairs[i], String.valueOf(pairs[i + 1]));
+        }
+        Log.i(TAG, sb.toString());
+        status.putString(Instrumentation.REPORT_KEY_STREAMRESULT, sb.append('\n').toString());
+        instrumentation.sendStatus(0, status);
+    }
+
+    private static long millisSince(long startNanos) {
+        return millis(startNanos, System.nanoTime());
+    }
+
+    private static long millis(long startNanos, long endNanos) {
+        return (endNanos - startNanos) / 1_000_000;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.onedriveexplorer;
+
+import android.app.Application;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.SavedStateHandle;
+import com.example.onedriveexplorer.models.DriveItem;
+import com.example.onedriveexplorer.mutation.Mutation;
+import com.example.onedriveexplorer.mutation.MutationQueue;
+import com.example.onedriveexplorer.navigation.ListingCacheStore;
+import com.example.onedriveexplorer.navigation.ListingSorter;
+import com.example.onedriveexplorer.navigation.NavigationManager;
+import com.example.onedriveexplorer.network.BatchExecutor;
+import com.example.onedriveexplorer.network.OneDriveClient;
+import com.example.onedriveexplorer.network.OneDriveService;
+import com.example.onedriveexplorer.network.RequestScheduler;
+import com.example.onedriveexplorer.thumbnail.ThumbnailLoader;
+import com.example.onedriveexplorer.transfer.ContentUriSource;
+import com.example.onedriveexplorer.transfer.DownloadEngine;
+import com.example.onedriveexplorer.transfer.UploadEngine;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What MainActivity keeps across configuration changes: the navigation tree with its cached
+ * listings, queued changes, transfers and the thumbnail caches. A rotation re-attaches to all
+ * of it without a network call.
+ *
+ * After process death the listings come back from ListingCacheStore and the rest from
+ * SavedStateHandle: the open folder's path, view mode, sort order and selection. The tree is
+ * then revalidated (delta where possible), not reloaded.
+ */
+public class BrowserViewModel extends AndroidViewModel {
+    private static final String TAG = "BrowserViewModel";
+    private static final String KEY_PATH = "path";
+    private static final String KEY_GRID = "grid";
+    private static final String KEY_SORT_KEY = "sortKey";
+    private static final String KEY_SORT_DESCENDING = "sortDescending";
+    private static final String KEY_FILTER = "filter";
+    private static final String KEY_SELECTION = "selection";
+
+    final OneDriveService service;
+    final NavigationManager nav;
+    final ListingCacheStore cacheStore;
+    final BatchExecutor batchExecutor;
+    final MutationQueue mutations;
+    final DownloadEngine downloadEngine;
+    final UploadEngine uploadEngine;
+    final ThumbnailLoader thumbnailLoader;
+
+    private final SavedStateHandle state;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private ConnectivityManager.NetworkCallback networkCallback;
+    private MutationUi mutationUi;
+    private TransferUi transferUi;
+    private int pendingMutations;
+    private boolean waitingForNetwork;
+    // nav.init() runs once both are in, so a restored tree is revalidated instead of refetched
+    private boolean cacheLoaded;
+    private boolean tokenReady;
+    private boolean started;
+
+    /**
+     * The parts of MutationQueue.Listener that need a screen; cache updates are applied here
+     */
+    public interface MutationUi {
+        void onFailed(Mutation mutation, String message);
+
+        void onPendingChanged(int pending, boolean waitingForNetwork);
+    }
+
+    /**
+     * Results of downloads, uploads and moves, which can finish after the Activity that
+     * started them is gone; they go to whichever one is attached
+     */
+    public interface TransferUi {
+        void onDownloadFinished(String folderName, int files, double bytesPerSecond, int failures);
+
+        void onUploaded(DriveItem item);
+
+        void onUploadFailed(String name, String message);
+
+        void onMoved(int succeeded, int total);
+    }
+
+    public BrowserViewModel(@NonNull Application app, @NonNull SavedStateHandle state) {
+        super(app);
+        this.state = state;
+
+        OneDriveClient.init(app);
+        service = OneDriveClient.getService();
+        // Prefetch, thumbnails and bulk-download listings queue behind what the user is waiting for
+        OneDriveService background = OneDriveClient.getService(RequestScheduler.Lane.BACKGROUND);
+        batchExecutor = new BatchExecutor(service);
+        downloadEngine = new DownloadEngine(background, OneDriveClient.getContentClient());
+        File uploadStateDir = new File(app.getFilesDir(), "uploads");
+        uploadStateDir.mkdirs();
+        uploadEngine = new UploadEngine(service, OneDriveClient.getContentClient(), uploadStateDir);
+        thumbnailLoader = new ThumbnailLoader(background, new File(app.getCacheDir(), "thumbnails"));
+
+        DriveItem rootItem = new DriveItem();
+        rootItem.id = "root";
+        rootItem.name = "OneDrive";
+        rootItem.folder = new DriveItem.Folder();
+        nav = new NavigationManager(rootItem, service, background);
+
+        // Show the last-known tree from disk, at the folder that was open, while the token is being fetched
+        cacheStore = new ListingCacheStore(app.getFilesDir());
+        cacheStore.load(snapshot -> {
+            List<String> path = state.get(KEY_PATH);
+            nav.restore(snapshot, path != null ? path : new ArrayList<>());
+            cacheLoaded = true;
+            startIfReady();
+        });
+        mutations = new MutationQueue(service, batchExecutor, app.getFilesDir(), mutationListener);
+        watchConnectivity(app);
+    }
+
+    // ===== Lifecycle =====
+
+    /**
+     * The token is usable: start sending queued changes and resume interrupted uploads
+     */
+    void onTokenReady() {
+        if (tokenReady) return;
+        tokenReady = true;
+        mutations.start();
+        ContentResolver resolver = getApplication().getContentResolver();
+        uploadEngine.resumePending(key -> ContentUriSource.from(resolver, Uri.parse(key)), uploadListener);
+        startIfReady();
+    }
+
+    /**
+     * Whether the tree is loaded or loading already, i.e. the Activity was only recreated
+     */
+    boolean isStarted() {
+        return started;
+    }
+
+    private void startIfReady() {
+        if (started || !cacheLoaded || !tokenReady) return;
+        started = true;
+        nav.init();
+    }
+
+    /**
+     * Attach the Activity's mutation UI, or detach it with null; an attached one is told the
+     * current pending count at once
+     */
+    void setMutationUi(MutationUi ui) {
+        mutationUi = ui;
+        if (ui != null) ui.onPendingChanged(pendingMutations, waitingForNetwork);
+    }
+
+    /**
+     * Attach the Activity's transfer UI, or detach it with null; results that arrive while
+     * none is attached are dropped
+     */
+    void setTransferUi(TransferUi ui) {
+        transferUi = ui;
+    }
+
+    @Override
+    protected void onCleared() {
+        nav.setCallback(null);
+        nav.cancelAll();
+        mutations.shutdown();
+        downloadEngine.shutdown();
+        uploadEngine.shutdown();
+        thumbnailLoader.shutdown();
+        if (networkCallback != null) {
+            ConnectivityManager cm = (ConnectivityManager) getApplication().getSystemService(Context.CONNECTIVITY_SERVICE);
+            if (cm != null) cm.unregisterNetworkCallback(networkCallback);
+        }
+    }
+
+    // ===== Saved state =====
+
+    /**
+     * Record what the screen shows, for process death; call from onSaveInstanceState()
+     */
+    void saveUiState(boolean grid, ListingSorter.Order order, ArrayList<String> selectedIds) {
+        state.set(KEY_PATH, nav.getPathIds());
+        state.set(KEY_GRID, grid);
+        state.set(KEY_SORT_KEY, order.key.name());
+        state.set(KEY_SORT_DESCENDING, order.descending);
+        state.set(KEY_FILTER, order.filter.name());
+        state.set(KEY_SELECTION, selectedIds);
+    }
+
+    boolean isGridView() {
+        Boolean grid = state.get(KEY_GRID);
+        return grid != null && grid;
+    }
+
+    ListingSorter.Order getSortOrder() {
+        String key = state.get(KEY_SORT_KEY);
+        String filter = state.get(KEY_FILTER);
+        Boolean descending = state.get(KEY_SORT_DESCENDING);
+        if (key == null || filter == null || descending == null) return ListingSorter.Order.DEFAULT;
+        return new ListingSorter.Order(ListingSorter.SortKey.valueOf(key), descending,
+                ListingSorter.TypeFilter.valueOf(filter));
+    }
+
+    List<String> getSelectedIds() {
+        List<String> ids = state.get(KEY_SELECTION);
+        return ids != null ? ids : new ArrayList<>();
+    }
+
+    // ===== Transfers =====
+
+    void downloadFolder(DriveItem folder, File destDir) {
+        downloadEngine.download(folder, destDir, new DownloadEngine.Listener() {
+            @Override
+            public void onProgress(long bytesDone, long bytesTotal, double bytesPerSecond) {
+                Log.d(TAG, "Download " + folder.name + ": " + bytesDone + "/" + bytesTotal
+                        + " bytes, " + (long) (bytesPerSecond / 1024) + " KB/s");
+            }
+
+            @Override
+            public void onComplete(int files, long bytes, double bytesPerSecond, List<String> failures) {
+                if (transferUi != null) transferUi.onDownloadFinished(folder.name, files, bytesPerSecond, failures.size());
+            }
+        });
+    }
+
+    void upload(UploadEngine.Source source, String parentId) {
+        uploadEngine.upload(source, parentId, uploadListener);
+    }
+
+    private final UploadEngine.Listener uploadListener = new UploadEngine.Listener() {
+        @Override
+        public void onChunkUploaded(String name, long bytesDone, long bytesTotal, long chunkLatencyMs, double bytesPerSecond) {
+            Log.d(TAG, "Upload " + name + ": " + bytesDone + "/" + bytesTotal + " bytes, chunk "
+                    + chunkLatencyMs + " ms, " + (long) (bytesPerSecond / 1024) + " KB/s");
+        }
+
+        @Override
+        public void onComplete(DriveItem item) {
+            nav.applyChanges(Collections.singletonList(item), Collections.emptyList());
+            if (transferUi != null) transferUi.onUploaded(item);
+        }
+
+        @Override
+        public void onError(String name, String message) {
+            if (transferUi != null) transferUi.onUploadFailed(name, message);
+        }
+    };
+
+    void moveItems(List<DriveItem> items, String targetId) {
+        List<BatchExecutor.Operation> ops = new ArrayList<>();
+        for (DriveItem item : items) ops.add(BatchExecutor.Operation.move(item.id, targetId));
+
+        batchExecutor.execute(ops, results -> {
+            List<DriveItem> moved = new ArrayList<>();
+            for (BatchExecutor.Result result : results) {
+                if (result.isSuccess() && result.item != null) moved.add(result.item);
+            }
+            nav.applyChanges(moved, Collections.emptyList());
+            if (transferUi != null) transferUi.onMoved(moved.size(), results.size());
+        });
+    }
+
+    // ===== Pending changes =====
+
+    private final MutationQueue.Listener mutationListener = new MutationQueue.Listener() {
+        @Override
+        public void onChanges(List<DriveItem> updatedItems, List<String> deletedIds) {
+            nav.applyChanges(updatedItems, deletedIds);
+        }
+
+        @Override
+        public void onFailed(Mutation mutation, String message) {
+            if (mutationUi != null) mutationUi.onFailed(mutation, message);
+        }
+
+        @Override
+        public void onPendingChanged(int pending, boolean waitingForNetwork) {
+            pendingMutations = pending;
+            BrowserViewModel.this.waitingForNetwork = waitingForNetwork;
+            if (mutationUi != null) mutationUi.onPendingChanged(pending, waitingForNetwork);
+        }
+    };
+
+    /**
+     * Hold queued changes while there is no network and send them as soon as it returns
+     */
+    private void watchConnectivity(Context context) {
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (cm == null) return;
+        mutations.setOnline(cm.getActiveNetwork() != null);
+        networkCallback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                mainHandler.post(() -> mutations.setOnline(true));
+            }
+
+            @Override
+            public void onLost(Network network) {
+                mainHandler.post(() -> mutations.setOnline(false));
+            }
+        };
+        cm.registerDefaultNetworkCallback(networkCallback);
+    }
+}
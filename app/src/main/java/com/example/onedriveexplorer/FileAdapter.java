@@ -1,20 +1,40 @@
 package com.example.onedriveexplorer;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 import com.example.onedriveexplorer.models.DriveItem;
+import com.example.onedriveexplorer.navigation.CompactListing;
+import com.example.onedriveexplorer.thumbnail.ThumbnailLoader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public class FileAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
-    private List<DriveItem> items = new ArrayList<>();
+    // Partial-bind payload: only the selection checkbox and card stroke changed
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    // Diffs run here, one at a time; only the latest submitted listing is dispatched
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    // What is on screen. Rows are bound from its columns; DriveItems are built only on click
+    private CompactListing listing = CompactListing.empty();
+    private int submitGeneration;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private final OnItemClickListener listener;
+    private ThumbnailLoader thumbnailLoader;  // grid previews; null shows type icons only
+    private Runnable onFirstBind;             // called once for the first row bound after resetItems()
+    private boolean firstBindPending;
 
     public interface OnItemClickListener {
         void onItemClick(DriveItem item);
@@ -23,15 +43,103 @@ public class FileAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
     public FileAdapter(OnItemClickListener listener) {
         this.listener = listener;
+        setHasStableIds(true);
     }
 
     private boolean isGridView = false;
     private static final int VIEW_TYPE_LIST = 0;
     private static final int VIEW_TYPE_GRID = 1;
 
+    /**
+     * Update the current folder's items; only rows that actually changed are rebound.
+     * The whole update is one diff, computed off the main thread and dispatched at once.
+     */
     public void setItems(List<DriveItem> items) {
-        this.items = items;
-        notifyDataSetChanged();
+        // Listings never change, so one can be shown as-is
+        final CompactListing next = items != null ? CompactListing.of(items) : CompactListing.empty();
+        final int generation = ++submitGeneration;
+        if (next == listing) return;
+        final CompactListing old = listing;
+        if (old.isEmpty() || next.isEmpty()) {
+            listing = next;
+            if (old.isEmpty()) {
+                notifyItemRangeInserted(0, next.size());
+            } else {
+                notifyItemRangeRemoved(0, old.size());
+            }
+            return;
+        }
+        DIFF_EXECUTOR.execute(() -> {
+            DiffUtil.DiffResult result = DiffUtil.calculateDiff(new ListingDiff(old, next));
+            mainHandler.post(() -> {
+                if (generation != submitGeneration) return;
+                listing = next;
+                result.dispatchUpdatesTo(this);
+            });
+        });
+    }
+
+    /**
+     * Show a different folder: nothing in common with the old list, so skip the diff
+     */
+    public void resetItems(List<DriveItem> items) {
+        ++submitGeneration;
+        int removed = listing.size();
+        listing = CompactListing.empty();
+        notifyItemRangeRemoved(0, removed);
+        firstBindPending = true;
+        setItems(items);
+    }
+
+    /**
+     * Compares the listings' columns; get() would build two DriveItems per comparison
+     */
+    private static final class ListingDiff extends DiffUtil.Callback {
+        private final CompactListing oldList;
+        private final CompactListing newList;
+
+        ListingDiff(CompactListing oldList, CompactListing newList) {
+            this.oldList = oldList;
+            this.newList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return Objects.equals(oldList.getId(oldPosition), newList.getId(newPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            // What the rows display, plus the tags and size: changed content needs a new thumbnail
+            return Objects.equals(oldList.getName(oldPosition), newList.getName(newPosition))
+                    && Objects.equals(oldList.getETag(oldPosition), newList.getETag(newPosition))
+                    && Objects.equals(oldList.getCTag(oldPosition), newList.getCTag(newPosition))
+                    && oldList.getSize(oldPosition) == newList.getSize(newPosition)
+                    && oldList.isFolder(oldPosition) == newList.isFolder(newPosition)
+                    && oldList.getChildCount(oldPosition) == newList.getChildCount(newPosition)
+                    && Objects.equals(oldList.getMimeType(oldPosition), newList.getMimeType(newPosition));
+        }
+    }
+
+    /**
+     * Told when the first row of a folder shown with resetItems() is bound, for PerfMonitor
+     */
+    public void setOnFirstBindListener(Runnable onFirstBind) {
+        this.onFirstBind = onFirstBind;
+    }
+
+    public void setThumbnailLoader(ThumbnailLoader thumbnailLoader) {
+        this.thumbnailLoader = thumbnailLoader;
     }
 
     public void setGridView(boolean isGridView) {
@@ -54,27 +162,103 @@ public class FileAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
     public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         if (viewType == VIEW_TYPE_GRID) {
             View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_file_grid, parent, false);
-            return new GridViewHolder(view);
+            GridViewHolder holder = new GridViewHolder(view);
+            // Handlers read the position and mode when clicked, so binds don't replace them
+            view.setOnClickListener(v -> {
+                int position = holder.getBindingAdapterPosition();
+                if (position == RecyclerView.NO_POSITION) return;
+                if (isSelectionMode) {
+                    toggleSelection(position);
+                } else {
+                    listener.onItemClick(listing.get(position));
+                }
+            });
+            view.setOnLongClickListener(v -> {
+                int position = holder.getBindingAdapterPosition();
+                if (position == RecyclerView.NO_POSITION || isSelectionMode) return false;
+                toggleSelection(position);  // Enter selection mode and select this item
+                return true;
+            });
+            return holder;
         } else {
             View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_file_list, parent, false);
-            return new ListViewHolder(view);
+            ListViewHolder holder = new ListViewHolder(view);
+            view.setOnClickListener(v -> {
+                int position = holder.getBindingAdapterPosition();
+                if (position != RecyclerView.NO_POSITION) listener.onItemClick(listing.get(position));
+            });
+            if (holder.moreOptionsView != null) {
+                holder.moreOptionsView.setOnClickListener(v -> {
+                    int position = holder.getBindingAdapterPosition();
+                    if (position != RecyclerView.NO_POSITION) listener.onItemLongClick(listing.get(position), v);
+                });
+            }
+            return holder;
         }
     }
 
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
-        DriveItem item = items.get(position);
+        if (firstBindPending) {
+            firstBindPending = false;
+            if (onFirstBind != null) onFirstBind.run();
+        }
+        CompactListing items = listing;
         if (holder instanceof GridViewHolder) {
-            boolean isSelected = selectedItemIds.contains(item.id);
-            ((GridViewHolder) holder).bind(item, listener, isSelectionMode, isSelected, this::toggleSelection);
+            GridViewHolder grid = (GridViewHolder) holder;
+            grid.bind(items, position);
+            grid.bindSelection(isSelectionMode, selectedItemIds.contains(items.getId(position)));
+            if (thumbnailLoader == null) return;
+            // The type icon stays until the preview arrives; only previews need a DriveItem
+            if (ThumbnailLoader.hasThumbnail(items.isFolder(position), items.getMimeType(position))) {
+                thumbnailLoader.load(items.get(position), grid.iconView);
+            } else {
+                thumbnailLoader.cancel(grid.iconView);
+            }
+        } else {
+            ((ListViewHolder) holder).bind(items, position);
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.contains(PAYLOAD_SELECTION) && holder instanceof GridViewHolder) {
+            ((GridViewHolder) holder).bindSelection(isSelectionMode, selectedItemIds.contains(listing.getId(position)));
         } else {
-            ((ListViewHolder) holder).bind(item, listener);
+            onBindViewHolder(holder, position);
+        }
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull RecyclerView.ViewHolder holder) {
+        if (holder instanceof GridViewHolder && thumbnailLoader != null) {
+            thumbnailLoader.cancel(((GridViewHolder) holder).iconView);
         }
     }
 
     @Override
     public int getItemCount() {
-        return items.size();
+        return listing.size();
+    }
+
+    public DriveItem getItem(int position) {
+        return listing.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableId(listing.getId(position));
+    }
+
+    // 64-bit FNV-1a of the Graph item id; String.hashCode collides too easily for large folders
+    private static long stableId(String id) {
+        if (id == null) return RecyclerView.NO_ID;
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
     }
 
     static class ListViewHolder extends RecyclerView.ViewHolder {
@@ -93,16 +277,11 @@ public class FileAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
             moreOptionsView = itemView.findViewById(R.id.fileMoreOptions);
         }
 
-        public void bind(final DriveItem item, final OnItemClickListener listener) {
-            nameView.setText(item.name);
-            sizeView.setText(item.getFormattedSize());
+        public void bind(CompactListing items, int position) {
+            nameView.setText(items.getName(position));
+            sizeView.setText(DriveItem.formatSize(items.isFile(position), items.getSize(position)));
             // dateView.setText(item.getFormattedDate()); // Need to implement date
-            iconView.setImageResource(getIconResId(item));
-
-            itemView.setOnClickListener(v -> listener.onItemClick(item));
-            if (moreOptionsView != null) {
-                moreOptionsView.setOnClickListener(v -> listener.onItemLongClick(item, v));
-            }
+            iconView.setImageResource(getIconResId(items.isFolder(position), items.getMimeType(position)));
         }
     }
 
@@ -120,20 +299,15 @@ public class FileAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
             selectionCheckbox = itemView.findViewById(R.id.selectionCheckbox);
         }
 
-        public void bind(final DriveItem item, final OnItemClickListener listener) {
-            // Bind existing data (moved to adapter to access state)
+        // Selection visuals are bound separately, see bindSelection()
+        public void bind(CompactListing items, int position) {
+            nameView.setText(items.getName(position));
+            sizeView.setText(DriveItem.formatSize(items.isFile(position), items.getSize(position)));
+            iconView.setImageResource(getIconResId(items.isFolder(position), items.getMimeType(position)));
         }
-        
-        // Helper to bind with adapter state
-        public void bind(final DriveItem item, final OnItemClickListener listener, 
-                         boolean isSelectionMode, boolean isSelected, 
-                         java.util.function.Consumer<DriveItem> onToggle) {
-                         
-            nameView.setText(item.name);
-            sizeView.setText(item.getFormattedSize());
-            iconView.setImageResource(getIconResId(item));
-
-            // Selection Logic
+
+        // Selection visuals only: checkbox and card stroke
+        void bindSelection(boolean isSelectionMode, boolean isSelected) {
             if (isSelectionMode) {
                 selectionCheckbox.setVisibility(View.VISIBLE);
                 selectionCheckbox.setImageResource(isSelected ? R.drawable.ic_check_circle_filled : R.drawable.ic_circle_outline);
@@ -151,31 +325,14 @@ public class FileAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
                      ((com.google.android.material.card.MaterialCardView) itemView).setStrokeWidth(0);
                 }
             }
-
-            itemView.setOnClickListener(v -> {
-                if (isSelectionMode) {
-                    onToggle.accept(item);
-                } else {
-                    listener.onItemClick(item);
-                }
-            });
-
-            itemView.setOnLongClickListener(v -> {
-                if (!isSelectionMode) {
-                    onToggle.accept(item); // Enter selection mode and select this item
-                    return true;
-                }
-                return false;
-            });
         }
     }
 
-    private static int getIconResId(DriveItem item) {
-        if (item.isDirectory()) {
+    static int getIconResId(boolean isFolder, String mime) {
+        if (isFolder) {
             return R.drawable.ic_folder_colored;
         }
-        if (item.file != null && item.file.mimeType != null) {
-            String mime = item.file.mimeType;
+        if (mime != null) {
             if (mime.startsWith("image/")) {
                 return R.drawable.ic_file_image;
             } else if (mime.equals("application/pdf")) {
@@ -200,21 +357,57 @@ public class FileAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         this.selectionChangeListener = listener;
     }
 
-    private void toggleSelection(DriveItem item) {
-        if (selectedItemIds.contains(item.id)) {
-            selectedItemIds.remove(item.id);
+    public int getSelectedCount() {
+        return selectedItemIds.size();
+    }
+
+    public List<DriveItem> getSelectedItems() {
+        List<DriveItem> selected = new ArrayList<>();
+        CompactListing items = listing;
+        for (int i = 0; i < items.size(); i++) {
+            if (selectedItemIds.contains(items.getId(i))) selected.add(items.get(i));
+        }
+        return selected;
+    }
+
+    /**
+     * Ids of the selected items, e.g. for saved state
+     */
+    public ArrayList<String> getSelectedIds() {
+        return new ArrayList<>(selectedItemIds);
+    }
+
+    /**
+     * Bring back a selection from getSelectedIds(); ids no longer listed select nothing
+     */
+    public void setSelectedIds(java.util.Collection<String> ids) {
+        selectedItemIds.clear();
+        selectedItemIds.addAll(ids);
+        isSelectionMode = !selectedItemIds.isEmpty();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+        if (selectionChangeListener != null) {
+            selectionChangeListener.onSelectionChanged(selectedItemIds.size());
+        }
+    }
+
+    private void toggleSelection(int position) {
+        String id = listing.getId(position);
+        if (selectedItemIds.contains(id)) {
+            selectedItemIds.remove(id);
         } else {
-            selectedItemIds.add(item.id);
+            selectedItemIds.add(id);
         }
         
-        if (selectedItemIds.isEmpty()) {
-            isSelectionMode = false;
+        boolean wasSelectionMode = isSelectionMode;
+        isSelectionMode = !selectedItemIds.isEmpty();
+        
+        if (wasSelectionMode != isSelectionMode) {
+            // Every card shows or hides its checkbox
+            notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
         } else {
-            isSelectionMode = true;
+            notifyItemChanged(position, PAYLOAD_SELECTION);
         }
         
-        notifyDataSetChanged();
-        
         if (selectionChangeListener != null) {
             selectionChangeListener.onSelectionChanged(selectedItemIds.size());
         }
@@ -223,7 +416,7 @@ public class FileAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
     public void clearSelection() {
         selectedItemIds.clear();
         isSelectionMode = false;
-        notifyDataSetChanged();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
         if (selectionChangeListener != null) {
             selectionChangeListener.onSelectionChanged(0);
         }
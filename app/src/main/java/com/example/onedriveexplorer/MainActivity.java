@@ -2,94 +2,204 @@ package com.example.onedriveexplorer;
 
 import android.app.DownloadManager;
 import android.content.Context;
+import android.content.Intent;
+import android.net.ConnectivityManager;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Environment;
+import android.os.SystemClock;
+import android.util.Log;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.EditText;
 import android.widget.PopupMenu;
 import android.widget.Toast;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
+import com.example.onedriveexplorer.metrics.PerfMonitor;
+import com.example.onedriveexplorer.metrics.PerfOverlay;
 import com.example.onedriveexplorer.models.DriveItem;
+import com.example.onedriveexplorer.mutation.Mutation;
+import com.example.onedriveexplorer.mutation.MutationQueue;
+import com.example.onedriveexplorer.navigation.CompactListing;
+import com.example.onedriveexplorer.navigation.FileNode;
+import com.example.onedriveexplorer.navigation.FileSearch;
+import com.example.onedriveexplorer.navigation.ListingSorter;
+import com.example.onedriveexplorer.navigation.ListingCacheStore;
 import com.example.onedriveexplorer.navigation.NavigationManager;
 import com.example.onedriveexplorer.network.OneDriveClient;
 import com.example.onedriveexplorer.network.OneDriveService;
+import com.example.onedriveexplorer.network.TokenManager;
+import com.example.onedriveexplorer.thumbnail.ThumbnailLoader;
+import com.example.onedriveexplorer.transfer.ContentUriSource;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 
 public class MainActivity extends AppCompatActivity implements FileAdapter.OnItemClickListener {
 
+    private static final String TAG = "MainActivity";
+
+    // Start loading the next page when this many rows are left below the last visible one
+    private static final int PAGE_PREFETCH_DISTANCE = 30;
+    // Grid previews to warm up past the last visible card
+    private static final int THUMBNAIL_PREFETCH_DISTANCE = 12;
+
+    // Menu items for ListingSorter.SortKey and TypeFilter, in declaration order
+    private static final int[] SORT_ITEMS = {R.id.sort_name, R.id.sort_type, R.id.sort_size, R.id.sort_date};
+    private static final int[] FILTER_ITEMS = {R.id.filter_all, R.id.filter_folders, R.id.filter_documents,
+            R.id.filter_images, R.id.filter_videos, R.id.filter_audio};
+
+    private BrowserViewModel model;
     private RecyclerView recyclerView;
     private FileAdapter adapter;
     private OneDriveService service;
     private NavigationManager nav;
+    private ListingCacheStore cacheStore;
+    private MutationQueue mutations;
+    private ThumbnailLoader thumbnailLoader;
+    private ActivityResultLauncher<String[]> pickUpload;
+    private MenuItem searchItem;
+    private FileNode shownNode;  // folder whose items the adapter currently holds
+    private boolean searching;   // the adapter shows search results, not shownNode
+    // Current folder's items as NavigationManager delivered them, before sorting and filtering
+    private FileNode sourceNode;
+    private CompactListing source = CompactListing.empty();
+    private final ListingSorter sorter = new ListingSorter();
+    private ListingSorter.Order sortOrder = ListingSorter.Order.DEFAULT;
+    private PerfOverlay perfOverlay;
+    // When the folder being opened was asked for, until its first row is bound; 0 when not timing
+    private long listingOpenedAt;
+    private boolean listingFromCache;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        listingOpenedAt = SystemClock.uptimeMillis();
+        PerfMonitor.init(this);
         setContentView(R.layout.activity_main);
 
-        // Prompt for Access Token
-        // Fetch Access Token
-        fetchToken();
-
         recyclerView = findViewById(R.id.recycler_view);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         adapter = new FileAdapter(this);
         recyclerView.setAdapter(adapter);
+        adapter.setOnSelectionChangeListener(count -> invalidateOptionsMenu());
+        adapter.setOnFirstBindListener(this::onFirstRowBound);
+        perfOverlay = new PerfOverlay(this, this::cacheStats);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(RecyclerView rv, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) prefetchVisibleFolders();
+            }
+
+            @Override
+            public void onScrolled(RecyclerView rv, int dx, int dy) {
+                if (nav == null || searching || dy <= 0 || !nav.hasMorePages()) return;
+                // GridLayoutManager extends LinearLayoutManager, so this covers both view modes
+                LinearLayoutManager lm = (LinearLayoutManager) rv.getLayoutManager();
+                if (lm != null && lm.findLastVisibleItemPosition() >= adapter.getItemCount() - PAGE_PREFETCH_DISTANCE) {
+                    nav.loadNextPage();
+                }
+            }
+        });
 
         FloatingActionButton fab = findViewById(R.id.fab_add_folder);
         fab.setOnClickListener(v -> showCreateFolderDialog());
+
+        // Navigation, caches and transfers outlive this Activity; see BrowserViewModel
+        model = new ViewModelProvider(this).get(BrowserViewModel.class);
+        service = model.service;
+        nav = model.nav;
+        cacheStore = model.cacheStore;
+        mutations = model.mutations;
+        thumbnailLoader = model.thumbnailLoader;
+        pickUpload = registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::uploadFile);
+        adapter.setThumbnailLoader(thumbnailLoader);
+        restoreUiState();
+        initNavigation();
+        model.setMutationUi(mutationUi);
+        model.setTransferUi(transferUi);
+
+        // After a rotation the open folder is still cached: shown again without a network call
+        nav.redeliver();
+        if (!model.isStarted()) fetchToken();
+    }
+
+    /**
+     * View mode, sort order and selection as they were before a rotation or process death
+     */
+    private void restoreUiState() {
+        sortOrder = model.getSortOrder();
+        if (model.isGridView()) applyViewMode(true);
+        adapter.setSelectedIds(model.getSelectedIds());
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        // Into the ViewModel's SavedStateHandle, which super saves along with the rest
+        model.saveUiState(adapter.isGridView(), sortOrder, adapter.getSelectedIds());
+        super.onSaveInstanceState(outState);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        perfOverlay.hide();
+        sorter.cancel();
+        // Fetches keep running in the ViewModel and are delivered to the next Activity
+        nav.setCallback(null);
+        model.setMutationUi(null);
+        model.setTransferUi(null);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (nav != null) nav.onTrimMemory(level);
+        if (thumbnailLoader != null) thumbnailLoader.onTrimMemory(level);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (nav != null) cacheStore.save(nav.snapshot());
     }
 
+    /**
+     * Use the saved token if it is still fresh, otherwise fetch one; TokenManager keeps it current from then on
+     */
     private void fetchToken() {
-        String ip = "192.168.29.30";
-        String baseUrl = "http://" + ip + ":8010/";
-        retrofit2.Retrofit retrofit = new retrofit2.Retrofit.Builder()
-                .baseUrl(baseUrl)
-                .addConverterFactory(retrofit2.converter.gson.GsonConverterFactory.create())
-                .build();
-
-        com.example.onedriveexplorer.network.TokenService tokenService = retrofit.create(com.example.onedriveexplorer.network.TokenService.class);
-        tokenService.getToken().enqueue(new Callback<com.example.onedriveexplorer.models.TokenResponse>() {
+        OneDriveClient.getTokenManager().ensureToken(new TokenManager.Callback() {
             @Override
-            public void onResponse(Call<com.example.onedriveexplorer.models.TokenResponse> call, Response<com.example.onedriveexplorer.models.TokenResponse> response) {
-                if (response.isSuccessful() && response.body() != null) {
-                    String token = response.body().accessToken;
-                    OneDriveClient.setAccessToken(token);
-                    service = OneDriveClient.getService();
-                    initNavigation();
+            public void onReady(boolean fromCache) {
+                model.onTokenReady();
+                if (!fromCache) {
                     Toast.makeText(MainActivity.this, "Token fetched successfully", Toast.LENGTH_SHORT).show();
-                } else {
-                    Toast.makeText(MainActivity.this, "Failed to fetch token: " + response.code(), Toast.LENGTH_LONG).show();
-                    // Optional: Retry logic could go here
                 }
             }
 
             @Override
-            public void onFailure(Call<com.example.onedriveexplorer.models.TokenResponse> call, Throwable t) {
-                Toast.makeText(MainActivity.this, "Error: " + t.getMessage(), Toast.LENGTH_LONG).show();
-                // Optional: Retry logic could go here
+            public void onError(String message) {
+                Toast.makeText(MainActivity.this, message, Toast.LENGTH_LONG).show();
             }
         });
     }
 
-
-
     private void initNavigation() {
-        DriveItem rootItem = new DriveItem();
-        rootItem.id = "root";
-        rootItem.name = "OneDrive";
-        rootItem.folder = new DriveItem.Folder();
-
-        nav = new NavigationManager(rootItem, service);
         androidx.swiperefreshlayout.widget.SwipeRefreshLayout swipeRefresh = findViewById(R.id.swipe_refresh_layout);
         swipeRefresh.setOnRefreshListener(() -> nav.refresh());
 
@@ -98,11 +208,24 @@ public class MainActivity extends AppCompatActivity implements FileAdapter.OnIte
             public void onSuccess(List<DriveItem> items, boolean fromCache) {
                 swipeRefresh.setRefreshing(false);
                 findViewById(R.id.progress_bar).setVisibility(View.GONE);
-                adapter.setItems(items);
+                if (nav.getCurrentNode() != sourceNode) {
+                    // A newly opened folder, not an update of the one on screen
+                    PerfMonitor.recordListingShown(fromCache);
+                    listingFromCache = fromCache;
+                }
+                sourceNode = nav.getCurrentNode();
+                source = CompactListing.of(items);
+                // Still kept; the folder is shown again when the search closes
+                if (searching) return;
+                showSorted();
                 setTitle(nav.getPath());
-                // Toast removed as per user request
-                // String source = fromCache ? "from cache" : "fetched from network";
-                // Toast.makeText(MainActivity.this, "Loaded " + source, Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onPageLoaded(List<DriveItem> items) {
+                // Sorted, the new items can land anywhere in the list
+                source = source.append(items);
+                if (!searching) showSorted();
             }
 
             @Override
@@ -119,26 +242,219 @@ public class MainActivity extends AppCompatActivity implements FileAdapter.OnIte
                 }
             }
         });
-        nav.init();
+    }
+
+    /**
+     * Put the current folder on screen in the chosen order, as a single adapter update:
+     * a new folder replaces the list, the same folder is diffed against what is shown
+     */
+    private void showSorted() {
+        final FileNode node = sourceNode;
+        if (node == null) return;
+        sorter.sort(node, source, sortOrder, sorted -> {
+            if (node == shownNode) {
+                adapter.setItems(sorted);
+            } else {
+                shownNode = node;
+                adapter.resetItems(sorted);
+            }
+            // Once laid out, warm up the folders the user is most likely to open next
+            recyclerView.post(() -> prefetchVisibleFolders());
+        });
+    }
+
+    private void prefetchVisibleFolders() {
+        if (nav == null || !(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) return;
+        boolean dataSaver = isDataSaverOn();
+        nav.setPrefetchEnabled(!dataSaver);
+
+        LinearLayoutManager lm = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int first = lm.findFirstVisibleItemPosition();
+        int last = lm.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION) return;
+
+        List<DriveItem> visible = new ArrayList<>();
+        for (int i = first; i <= last && i < adapter.getItemCount(); i++) {
+            visible.add(adapter.getItem(i));
+        }
+        nav.prefetch(visible);
+
+        thumbnailLoader.cancelPrefetches();
+        if (adapter.isGridView() && !dataSaver) {
+            List<DriveItem> ahead = new ArrayList<>();
+            for (int i = last + 1; i <= last + THUMBNAIL_PREFETCH_DISTANCE && i < adapter.getItemCount(); i++) {
+                ahead.add(adapter.getItem(i));
+            }
+            thumbnailLoader.prefetch(ahead);
+        }
+    }
+
+    // System Data Saver restricts background data on metered networks; prefetch is exactly that
+    private boolean isDataSaverOn() {
+        ConnectivityManager cm = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
+        return cm != null && cm.isActiveNetworkMetered()
+                && cm.getRestrictBackgroundStatus() == ConnectivityManager.RESTRICT_BACKGROUND_STATUS_ENABLED;
     }
 
     @Override
     public boolean onCreateOptionsMenu(android.view.Menu menu) {
         getMenuInflater().inflate(R.menu.main_menu, menu);
+        setUpSearch(menu.findItem(R.id.action_search));
+        menu.findItem(R.id.action_perf_overlay).setVisible(PerfMonitor.isEnabled());
+        // The order may have been restored from saved state
+        menu.findItem(SORT_ITEMS[sortOrder.key.ordinal()]).setChecked(true);
+        menu.findItem(R.id.sort_descending).setChecked(sortOrder.descending);
+        menu.findItem(FILTER_ITEMS[sortOrder.filter.ordinal()]).setChecked(true);
         return true;
     }
 
+    // ===== Search =====
+
+    /**
+     * Results update as the user types, from the local index only; submitting the query
+     * also asks Graph, which finds items in folders that were never opened
+     */
+    private void setUpSearch(MenuItem searchItem) {
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint("Search loaded folders");
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextChange(String query) {
+                runSearch(query, false);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                runSearch(query, true);
+                searchView.clearFocus();
+                return true;
+            }
+        });
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                searching = true;
+                sorter.cancel();
+                shownNode = null;
+                adapter.clearSelection();
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                searching = false;
+                if (nav == null) return true;
+                nav.getSearch().cancel();
+                showSorted();
+                setTitle(nav.getPath());
+                return true;
+            }
+        });
+        this.searchItem = searchItem;
+    }
+
+    private void runSearch(String query, boolean includeRemote) {
+        if (nav == null || !searching) return;
+        if (query.trim().isEmpty()) {
+            nav.getSearch().cancel();
+            adapter.setItems(Collections.emptyList());
+            return;
+        }
+        nav.getSearch().search(query, includeRemote, new FileSearch.Listener() {
+            @Override
+            public void onResults(List<DriveItem> results, boolean complete) {
+                adapter.setItems(results);
+                setTitle(complete ? results.size() + " found" : "Searching OneDrive...");
+            }
+
+            @Override
+            public void onError(String message) {
+                Toast.makeText(MainActivity.this, message, Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    @Override
+    public boolean onPrepareOptionsMenu(android.view.Menu menu) {
+        boolean hasSelection = adapter.getSelectedCount() > 0;
+        menu.findItem(R.id.action_delete_selected).setVisible(hasSelection);
+        menu.findItem(R.id.action_move_selected).setVisible(hasSelection);
+        return super.onPrepareOptionsMenu(menu);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         if (item.getItemId() == R.id.action_toggle_view) {
             toggleView();
             return true;
         }
+        if (item.getItemId() == R.id.action_upload) {
+            pickUpload.launch(new String[] {"*/*"});
+            return true;
+        }
+        if (item.getItemId() == R.id.action_perf_overlay) {
+            if (perfOverlay.isShowing()) {
+                perfOverlay.hide();
+            } else {
+                perfOverlay.show();
+            }
+            item.setChecked(perfOverlay.isShowing());
+            return true;
+        }
+        if (onSortOrFilterSelected(item)) return true;
+        if (item.getItemId() == R.id.action_delete_selected) {
+            deleteItems(adapter.getSelectedItems());
+            return true;
+        }
+        if (item.getItemId() == R.id.action_move_selected) {
+            showMoveDialog(adapter.getSelectedItems());
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 
+    private boolean onSortOrFilterSelected(MenuItem item) {
+        ListingSorter.SortKey key = sortOrder.key;
+        boolean descending = sortOrder.descending;
+        ListingSorter.TypeFilter filter = sortOrder.filter;
+        int id = item.getItemId();
+        if (id == R.id.sort_name) {
+            key = ListingSorter.SortKey.NAME;
+        } else if (id == R.id.sort_type) {
+            key = ListingSorter.SortKey.TYPE;
+        } else if (id == R.id.sort_size) {
+            key = ListingSorter.SortKey.SIZE;
+        } else if (id == R.id.sort_date) {
+            key = ListingSorter.SortKey.DATE;
+        } else if (id == R.id.sort_descending) {
+            descending = !descending;
+        } else if (id == R.id.filter_all) {
+            filter = ListingSorter.TypeFilter.ALL;
+        } else if (id == R.id.filter_folders) {
+            filter = ListingSorter.TypeFilter.FOLDERS;
+        } else if (id == R.id.filter_documents) {
+            filter = ListingSorter.TypeFilter.DOCUMENTS;
+        } else if (id == R.id.filter_images) {
+            filter = ListingSorter.TypeFilter.IMAGES;
+        } else if (id == R.id.filter_videos) {
+            filter = ListingSorter.TypeFilter.VIDEOS;
+        } else if (id == R.id.filter_audio) {
+            filter = ListingSorter.TypeFilter.AUDIO;
+        } else {
+            return false;
+        }
+        item.setChecked(id != R.id.sort_descending || descending);
+        sortOrder = new ListingSorter.Order(key, descending, filter);
+        if (!searching) showSorted();
+        return true;
+    }
+
     private void toggleView() {
-        boolean isGrid = !adapter.isGridView();
+        applyViewMode(!adapter.isGridView());
+    }
+
+    private void applyViewMode(boolean isGrid) {
         adapter.setGridView(isGrid);
         if (isGrid) {
             recyclerView.setLayoutManager(new androidx.recyclerview.widget.GridLayoutManager(this, 2));
@@ -149,7 +465,14 @@ public class MainActivity extends AppCompatActivity implements FileAdapter.OnIte
 
     @Override
     public void onItemClick(DriveItem item) {
+        if (MutationQueue.isPlaceholder(item.id)) {
+            Toast.makeText(this, item.name + " hasn't been created on the server yet", Toast.LENGTH_SHORT).show();
+            return;
+        }
         if (item.isDirectory()) {
+            // Closing the search puts the current folder back before the new one is opened
+            if (searching && searchItem != null) searchItem.collapseActionView();
+            listingOpenedAt = SystemClock.uptimeMillis();
             nav.navigateTo(item);
         } else {
             // It's a file, maybe show details or download prompt
@@ -160,7 +483,8 @@ public class MainActivity extends AppCompatActivity implements FileAdapter.OnIte
     @Override
     public void onItemLongClick(DriveItem item, View view) {
         PopupMenu popup = new PopupMenu(this, view);
-        popup.getMenu().add("Download");
+        // A folder still waiting to be created has nothing to download yet
+        if (!MutationQueue.isPlaceholder(item.id)) popup.getMenu().add("Download");
         popup.getMenu().add("Rename");
         popup.getMenu().add("Delete");
         popup.setOnMenuItemClickListener(menuItem -> {
@@ -182,14 +506,32 @@ public class MainActivity extends AppCompatActivity implements FileAdapter.OnIte
 
     private void downloadFile(DriveItem item) {
         if (item.isDirectory()) {
-            Toast.makeText(this, "Cannot download folders yet", Toast.LENGTH_SHORT).show();
+            downloadFolder(item);
             return;
         }
-        if (item.downloadUrl == null) {
-            Toast.makeText(this, "No download URL found", Toast.LENGTH_SHORT).show();
+        if (item.downloadUrl != null) {
+            enqueueDownload(item);
             return;
         }
+        // Listings don't keep download URLs (they expire within the hour); ask for a fresh one
+        service.getItem(item.id).enqueue(new Callback<DriveItem>() {
+            @Override
+            public void onResponse(Call<DriveItem> call, Response<DriveItem> response) {
+                if (response.isSuccessful() && response.body() != null && response.body().downloadUrl != null) {
+                    enqueueDownload(response.body());
+                } else {
+                    Toast.makeText(MainActivity.this, "No download URL found", Toast.LENGTH_SHORT).show();
+                }
+            }
 
+            @Override
+            public void onFailure(Call<DriveItem> call, Throwable t) {
+                Toast.makeText(MainActivity.this, "Download failed: " + t.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void enqueueDownload(DriveItem item) {
         DownloadManager.Request request = new DownloadManager.Request(Uri.parse(item.downloadUrl));
         request.setTitle(item.name);
         request.setDescription("Downloading file...");
@@ -201,23 +543,98 @@ public class MainActivity extends AppCompatActivity implements FileAdapter.OnIte
         Toast.makeText(this, "Download started", Toast.LENGTH_SHORT).show();
     }
 
+    /**
+     * Whole folder trees go through DownloadEngine: parallel, chunked and resumable.
+     * Files land in the app's external Downloads directory.
+     */
+    private void downloadFolder(DriveItem folder) {
+        File destDir = getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
+        if (destDir == null) {
+            Toast.makeText(this, "Storage not available", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Toast.makeText(this, "Downloading " + folder.name + "...", Toast.LENGTH_SHORT).show();
+        model.downloadFolder(folder, destDir);
+    }
+
+    /**
+     * Large files go through a resumable upload session into the current folder.
+     * The read permission is kept so an interrupted upload can continue after a restart.
+     */
+    private void uploadFile(Uri uri) {
+        if (uri == null || nav == null) return;
+        try {
+            getContentResolver().takePersistableUriPermission(uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        } catch (SecurityException e) {
+            Log.w(TAG, "No persistable permission for " + uri, e);
+        }
+        ContentUriSource source = ContentUriSource.from(getContentResolver(), uri);
+        if (source == null) {
+            Toast.makeText(this, "Cannot read the selected file", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Toast.makeText(this, "Uploading " + source.getName() + "...", Toast.LENGTH_SHORT).show();
+        model.upload(source, nav.getGraphId(nav.getCurrentNode().fileItem));
+    }
+
     private void deleteItem(DriveItem item) {
-        service.deleteItem(item.id).enqueue(new Callback<Void>() {
-            @Override
-            public void onResponse(Call<Void> call, Response<Void> response) {
-                if (response.isSuccessful()) {
-                    Toast.makeText(MainActivity.this, "Deleted", Toast.LENGTH_SHORT).show();
-                    nav.refresh();
-                } else {
-                    Toast.makeText(MainActivity.this, "Delete failed", Toast.LENGTH_SHORT).show();
+        deleteItems(Collections.singletonList(item));
+    }
+
+    /**
+     * Gone from the listing at once; MutationQueue sends the deletes and brings back any the server refuses
+     */
+    private void deleteItems(List<DriveItem> items) {
+        if (nav == null || items.isEmpty()) return;
+        adapter.clearSelection();
+        mutations.delete(new ArrayList<>(items));
+    }
+
+    private void showMoveDialog(List<DriveItem> items) {
+        if (nav == null || items.isEmpty()) return;
+        // Targets: the parent folder and the sibling folders that aren't being moved
+        List<DriveItem> targets = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        if (nav.canGoBack()) {
+            targets.add(nav.getCurrentNode().parentNode.fileItem);
+            names.add(".. (" + nav.getCurrentNode().parentNode.fileItem.name + ")");
+        }
+        Set<String> movingIds = new HashSet<>();
+        for (DriveItem item : items) movingIds.add(item.id);
+        CompactListing shown = nav.getCurrentNode().cachedItems;
+        if (shown != null) {
+            for (int i = 0; i < shown.size(); i++) {
+                if (shown.isFolder(i) && !movingIds.contains(shown.getId(i))) {
+                    targets.add(shown.get(i));
+                    names.add(shown.getName(i));
                 }
             }
+        }
+        if (targets.isEmpty()) {
+            Toast.makeText(this, "No folder to move to", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-            @Override
-            public void onFailure(Call<Void> call, Throwable t) {
-                Toast.makeText(MainActivity.this, "Error: " + t.getMessage(), Toast.LENGTH_SHORT).show();
-            }
-        });
+        new AlertDialog.Builder(this)
+                .setTitle("Move " + items.size() + " item(s) to")
+                .setItems(names.toArray(new String[0]), (dialog, which) -> moveItems(items, targets.get(which)))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    /**
+     * Cleared at once, so a screen recreated before the results arrive doesn't keep them selected
+     */
+    private void moveItems(List<DriveItem> items, DriveItem target) {
+        adapter.clearSelection();
+        model.moveItems(items, nav.getGraphId(target));
+    }
+
+    private void reportBatch(String verb, int succeeded, int total) {
+        String message = succeeded == total
+                ? verb + " " + total + " item(s)"
+                : verb + " " + succeeded + " of " + total + ", " + (total - succeeded) + " failed";
+        Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
 
     private void showRenameDialog(DriveItem item) {
@@ -237,24 +654,8 @@ public class MainActivity extends AppCompatActivity implements FileAdapter.OnIte
     }
 
     private void renameItem(DriveItem item, String newName) {
-        DriveItem update = new DriveItem();
-        update.name = newName;
-        service.renameItem(item.id, update).enqueue(new Callback<DriveItem>() {
-            @Override
-            public void onResponse(Call<DriveItem> call, Response<DriveItem> response) {
-                if (response.isSuccessful()) {
-                    Toast.makeText(MainActivity.this, "Renamed", Toast.LENGTH_SHORT).show();
-                    nav.refresh();
-                } else {
-                    Toast.makeText(MainActivity.this, "Rename failed", Toast.LENGTH_SHORT).show();
-                }
-            }
-
-            @Override
-            public void onFailure(Call<DriveItem> call, Throwable t) {
-                Toast.makeText(MainActivity.this, "Error: " + t.getMessage(), Toast.LENGTH_SHORT).show();
-            }
-        });
+        if (newName.equals(item.name)) return;
+        mutations.rename(item, newName);
     }
 
     private void showCreateFolderDialog() {
@@ -275,33 +676,90 @@ public class MainActivity extends AppCompatActivity implements FileAdapter.OnIte
 
     private void createFolder(String name) {
         if (nav == null || nav.getCurrentNode() == null) return;
-        
-        DriveItem folder = new DriveItem();
-        folder.name = name;
-        folder.folder = new DriveItem.Folder(); // Indicates it's a folder
-        folder.folder.childCount = 0; // Optional, but good for structure
+        mutations.createFolder(nav.getGraphId(nav.getCurrentNode().fileItem), name);
+    }
 
-        service.createFolder(nav.getCurrentNode().fileItem.id, folder).enqueue(new Callback<DriveItem>() {
-            @Override
-            public void onResponse(Call<DriveItem> call, Response<DriveItem> response) {
-                if (response.isSuccessful()) {
-                    Toast.makeText(MainActivity.this, "Folder created", Toast.LENGTH_SHORT).show();
-                    nav.refresh();
-                } else {
-                    Toast.makeText(MainActivity.this, "Create failed: " + response.code(), Toast.LENGTH_SHORT).show();
-                }
+    // ===== Performance =====
+
+    private void onFirstRowBound() {
+        if (listingOpenedAt == 0) return;
+        PerfMonitor.recordFirstBind(listingFromCache, SystemClock.uptimeMillis() - listingOpenedAt);
+        listingOpenedAt = 0;
+    }
+
+    // Overlay lines for the caches PerfMonitor doesn't see
+    private String cacheStats() {
+        String folders = "Folder cache -";
+        if (nav != null) {
+            long hits = nav.getNodeCache().getHitCount();
+            long total = hits + nav.getNodeCache().getMissCount();
+            folders = "Folder cache " + hits + "/" + total + " hit (" + PerfMonitor.percent(hits, total) + "), "
+                    + nav.getNodeCache().getEvictionCount() + " evicted";
+        }
+        return folders + "\nThumbnails " + thumbnailLoader.getStats();
+    }
+
+    // ===== Pending changes =====
+
+    private final BrowserViewModel.MutationUi mutationUi = new BrowserViewModel.MutationUi() {
+        @Override
+        public void onFailed(Mutation mutation, String message) {
+            String what;
+            switch (mutation.type) {
+                case CREATE_FOLDER:
+                    what = "Creating " + mutation.name;
+                    break;
+                case RENAME:
+                    what = "Renaming " + mutation.before.name;
+                    break;
+                default:
+                    what = "Deleting " + mutation.before.name;
             }
+            Toast.makeText(MainActivity.this, what + " failed (" + message + "), undone", Toast.LENGTH_LONG).show();
+        }
 
-            @Override
-            public void onFailure(Call<DriveItem> call, Throwable t) {
-                Toast.makeText(MainActivity.this, "Error: " + t.getMessage(), Toast.LENGTH_SHORT).show();
+        @Override
+        public void onPendingChanged(int pending, boolean waitingForNetwork) {
+            if (getSupportActionBar() == null) return;
+            String subtitle = null;
+            if (pending > 0) {
+                subtitle = waitingForNetwork
+                        ? pending + " change(s) waiting for network"
+                        : "Saving " + pending + " change(s)...";
             }
-        });
-    }
+            getSupportActionBar().setSubtitle(subtitle);
+        }
+    };
+
+    private final BrowserViewModel.TransferUi transferUi = new BrowserViewModel.TransferUi() {
+        @Override
+        public void onDownloadFinished(String folderName, int files, double bytesPerSecond, int failures) {
+            String message = failures == 0
+                    ? "Downloaded " + files + " file(s), " + (long) (bytesPerSecond / 1024) + " KB/s"
+                    : "Download finished with " + failures + " error(s)";
+            Toast.makeText(MainActivity.this, message, Toast.LENGTH_LONG).show();
+        }
+
+        @Override
+        public void onUploaded(DriveItem item) {
+            Toast.makeText(MainActivity.this, "Uploaded " + item.name, Toast.LENGTH_SHORT).show();
+        }
+
+        @Override
+        public void onUploadFailed(String name, String message) {
+            Toast.makeText(MainActivity.this, "Upload of " + name + " failed: " + message, Toast.LENGTH_LONG).show();
+        }
+
+        @Override
+        public void onMoved(int succeeded, int total) {
+            reportBatch("Moved", succeeded, total);
+        }
+    };
 
     @Override
     public void onBackPressed() {
         if (nav != null && nav.canGoBack()) {
+            listingOpenedAt = SystemClock.uptimeMillis();
             nav.goBack();
         } else {
             super.onBackPressed();
@@ -0,0 +1,29 @@
+package com.example.onedriveexplorer.metrics;
+
+import android.os.SystemClock;
+import android.util.Printer;
+
+/**
+ * Installed as the main Looper's message logger, which brackets every dispatched message
+ * with ">>>>> Dispatching to ..." and "<<<<< Finished to ..."; a message that took longer
+ * than the threshold is reported as a stall, with the handler and callback it ran.
+ */
+final class MainThreadStallDetector implements Printer {
+    private final long thresholdMs;
+    private long dispatchStart;  // main thread only
+
+    MainThreadStallDetector(long thresholdMs) {
+        this.thresholdMs = thresholdMs;
+    }
+
+    @Override
+    public void println(String x) {
+        if (x.startsWith(">")) {
+            dispatchStart = SystemClock.uptimeMillis();
+        } else if (x.startsWith("<") && dispatchStart != 0) {
+            long took = SystemClock.uptimeMillis() - dispatchStart;
+            dispatchStart = 0;
+            if (took >= thresholdMs) PerfMonitor.recordStall(took, x.substring(x.indexOf(' ') + 1));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.onedriveexplorer.metrics;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Times the phases of one OkHttp call (DNS, connect, TLS, time to first byte, body) and
+ * reports them to PerfMonitor when the call ends. A call that reuses a pooled connection
+ * has no DNS, connect or TLS phase; one answered from the HTTP cache has no network phase
+ * at all. Installed on the base client, so every derived client is covered.
+ */
+public class NetworkEventListener extends EventListener {
+
+    /**
+     * One listener per call; calls get EventListener.NONE while instrumentation is off
+     */
+    public static final EventListener.Factory FACTORY =
+            call -> PerfMonitor.isEnabled() ? new NetworkEventListener() : EventListener.NONE;
+
+    private long callStart;
+    private long dnsStart;
+    private long dnsEnd;
+    private long connectStart;
+    private long connectEnd;
+    private long secureStart;
+    private long secureEnd;
+    private long requestSent;
+    private long firstByte;
+    private long headersEnd;
+    private long bodyEnd;
+    private long bodyBytes;
+    private int status;
+    private boolean networkUsed;
+
+    @Override
+    public void callStart(Call call) {
+        callStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> addresses) {
+        dnsEnd = System.nanoTime();
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+        connectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        secureStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        secureEnd = System.nanoTime();
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+        connectEnd = System.nanoTime();
+    }
+
+    @Override
+    public void requestHeadersStart(Call call) {
+        networkUsed = true;
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        requestSent = System.nanoTime();
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        requestSent = System.nanoTime();
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        firstByte = System.nanoTime();
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+        headersEnd = System.nanoTime();
+        status = response.code();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        bodyEnd = System.nanoTime();
+        bodyBytes = byteCount;
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        finish(call, false);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        finish(call, true);
+    }
+
+    // ===== Reporting =====
+
+    private void finish(Call call, boolean failed) {
+        long end = System.nanoTime();
+        StringBuilder phases = new StringBuilder();
+        phase(phases, "dns", dnsStart, dnsEnd, PerfMonitor.dns);
+        // Connect includes the TLS handshake, which is also reported on its own
+        phase(phases, "connect", connectStart, connectEnd, PerfMonitor.connect);
+        phase(phases, "tls", secureStart, secureEnd, PerfMonitor.tls);
+        phase(phases, "ttfb", requestSent, firstByte, PerfMonitor.ttfb);
+        // For streamed listings the body phase runs at the pace of the parser reading it
+        phase(phases, "body", headersEnd, bodyEnd, PerfMonitor.body);
+        phase(phases, "total", callStart, end, PerfMonitor.callTotal);
+        if (bodyBytes > 0) phases.append(" bytes=").append(bodyBytes);
+
+        boolean cacheHit = !failed && !networkUsed;
+        PerfMonitor.recordCall(label(call.request()), status, cacheHit, status == 304, failed, phases.toString());
+    }
+
+    private static void phase(StringBuilder sb, String name, long start, long end, PerfMonitor.Stat stat) {
+        if (start == 0 || end < start) return;
+        long millis = (end - start) / 1_000_000;
+        stat.record(millis);
+        if (sb.length() > 0) sb.append(' ');
+        sb.append(name).append('=').append(millis).append("ms");
+    }
+
+    // Method and path only: queries of pre-authenticated download URLs carry credentials
+    private static String label(Request request) {
+        HttpUrl url = request.url();
+        return request.method() + " " + url.host() + url.encodedPath();
+    }
+}
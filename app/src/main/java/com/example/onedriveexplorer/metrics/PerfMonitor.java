@@ -0,0 +1,185 @@
+package com.example.onedriveexplorer.metrics;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.os.Debug;
+import android.os.Looper;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide performance counters: Graph call phases (from NetworkEventListener), listing
+ * parse time, time from a folder being opened to its first row being bound, cache hit ratios
+ * and main-thread stalls.
+ *
+ * Recording is cheap and thread-safe. Every sample also goes to a rolling log in filesDir/perf
+ * (pull it with adb), and summary() feeds PerfOverlay. Instrumentation is on in debuggable
+ * builds only; otherwise every record method returns at once.
+ */
+public final class PerfMonitor {
+    private static final String LOG_DIR = "perf";
+    // A main-thread message that runs longer than this is a stall: several dropped frames
+    private static final long STALL_THRESHOLD_MS = 100;
+
+    private static volatile boolean enabled;
+    private static RollingLog log;
+
+    // ===== Stats =====
+
+    static final Stat dns = new Stat();
+    static final Stat connect = new Stat();
+    static final Stat tls = new Stat();
+    static final Stat ttfb = new Stat();
+    static final Stat body = new Stat();
+    static final Stat callTotal = new Stat();
+    private static final Stat parseCpu = new Stat();
+    private static final Stat firstBindCached = new Stat();
+    private static final Stat firstBindNetwork = new Stat();
+    private static final Stat stalls = new Stat();
+
+    private static final AtomicLong calls = new AtomicLong();
+    private static final AtomicLong failedCalls = new AtomicLong();
+    private static final AtomicLong httpCacheHits = new AtomicLong();
+    private static final AtomicLong httpRevalidated = new AtomicLong();
+    private static final AtomicLong parsedItems = new AtomicLong();
+    private static final AtomicLong listingsFromCache = new AtomicLong();
+    private static final AtomicLong listingsFromNetwork = new AtomicLong();
+
+    private PerfMonitor() {
+    }
+
+    /**
+     * Turn instrumentation on for debuggable builds; must run before OneDriveClient.init()
+     * so the HTTP clients pick up the event listener
+     */
+    public static synchronized void init(Context context) {
+        if (log != null) return;
+        Context app = context.getApplicationContext();
+        if ((app.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) == 0) return;
+        log = new RollingLog(new File(app.getFilesDir(), LOG_DIR));
+        Looper.getMainLooper().setMessageLogging(new MainThreadStallDetector(STALL_THRESHOLD_MS));
+        enabled = true;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // ===== Recording =====
+
+    static void recordCall(String label, int status, boolean cacheHit, boolean revalidated, boolean failed, String phases) {
+        calls.incrementAndGet();
+        if (failed) failedCalls.incrementAndGet();
+        if (cacheHit) httpCacheHits.incrementAndGet();
+        if (revalidated) httpRevalidated.incrementAndGet();
+        String outcome = failed ? "failed" : cacheHit ? "cache" : String.valueOf(status);
+        log.append("call " + label + " " + outcome + " " + phases);
+    }
+
+    static void recordStall(long millis, String message) {
+        stalls.record(millis);
+        log.append("stall " + millis + "ms " + message);
+    }
+
+    /**
+     * Time one parse of a listing body; finish() with the item count when it is done
+     */
+    public static ParseTimer startParse() {
+        return enabled ? new ParseTimer() : ParseTimer.NONE;
+    }
+
+    public static final class ParseTimer {
+        static final ParseTimer NONE = new ParseTimer();
+        private final long wallStart = System.nanoTime();
+        private final long cpuStart = Debug.threadCpuTimeNanos();
+
+        public void finish(int items) {
+            if (this == NONE) return;
+            // CPU time leaves out waiting for the body to arrive, which the call's body phase shows
+            long cpuMs = (Debug.threadCpuTimeNanos() - cpuStart) / 1_000_000;
+            long wallMs = (System.nanoTime() - wallStart) / 1_000_000;
+            parseCpu.record(cpuMs);
+            parsedItems.addAndGet(items);
+            log.append("parse items=" + items + " cpu=" + cpuMs + "ms wall=" + wallMs + "ms");
+        }
+    }
+
+    /**
+     * A folder reached the screen; fromCache is NavigationManager's flag for it
+     */
+    public static void recordListingShown(boolean fromCache) {
+        if (!enabled) return;
+        (fromCache ? listingsFromCache : listingsFromNetwork).incrementAndGet();
+    }
+
+    /**
+     * The first row of a newly opened folder was bound, this long after the folder was opened
+     */
+    public static void recordFirstBind(boolean fromCache, long millis) {
+        if (!enabled) return;
+        (fromCache ? firstBindCached : firstBindNetwork).record(millis);
+        log.append("firstBind " + (fromCache ? "cache" : "network") + " " + millis + "ms");
+    }
+
+    // ===== Reporting =====
+
+    /**
+     * Current figures, a few short lines for the overlay
+     */
+    public static String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Graph calls ").append(calls.get()).append(" (").append(failedCalls.get()).append(" failed)");
+        sb.append(", HTTP cache ").append(httpCacheHits.get()).append(" hit / ")
+                .append(httpRevalidated.get()).append(" 304\n");
+        sb.append("  dns     ").append(dns).append('\n');
+        sb.append("  connect ").append(connect).append('\n');
+        sb.append("  tls     ").append(tls).append('\n');
+        sb.append("  ttfb    ").append(ttfb).append('\n');
+        sb.append("  body    ").append(body).append('\n');
+        sb.append("  total   ").append(callTotal).append('\n');
+        sb.append("Parse cpu ").append(parseCpu).append(", ").append(parsedItems.get()).append(" items\n");
+        long cached = listingsFromCache.get();
+        long total = cached + listingsFromNetwork.get();
+        sb.append("Listings ").append(cached).append('/').append(total).append(" from cache")
+                .append(" (").append(percent(cached, total)).append(")\n");
+        sb.append("First bind cache   ").append(firstBindCached).append('\n');
+        sb.append("First bind network ").append(firstBindNetwork).append('\n');
+        sb.append("Stalls ").append(stalls.count()).append(", ").append(stalls);
+        return sb.toString();
+    }
+
+    public static String percent(long part, long total) {
+        return total == 0 ? "-" : (part * 100 / total) + "%";
+    }
+
+    /**
+     * Running count and max of one measurement, with percentiles over the latest samples
+     */
+    static final class Stat {
+        private static final int WINDOW = 128;
+        private final long[] recent = new long[WINDOW];
+        private long count;
+        private long max;
+
+        synchronized void record(long millis) {
+            recent[(int) (count % WINDOW)] = millis;
+            count++;
+            max = Math.max(max, millis);
+        }
+
+        synchronized long count() {
+            return count;
+        }
+
+        @Override
+        public synchronized String toString() {
+            if (count == 0) return "-";
+            long[] sorted = Arrays.copyOf(recent, (int) Math.min(count, WINDOW));
+            Arrays.sort(sorted);
+            return String.format(Locale.ROOT, "p50 %d p90 %d max %d ms",
+                    sorted[sorted.length / 2], sorted[sorted.length * 9 / 10], max);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.onedriveexplorer.metrics;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+import java.util.function.Supplier;
+
+/**
+ * Debug overlay over the activity's content showing PerfMonitor's summary, refreshed every
+ * second while shown. It doesn't take touches, so the list underneath stays usable.
+ */
+public class PerfOverlay {
+    private static final long REFRESH_MS = 1000;
+
+    private final Activity activity;
+    private final Supplier<String> extra;
+    private TextView view;
+
+    /**
+     * @param extra more lines from the activity (e.g. its caches), appended to the summary
+     */
+    public PerfOverlay(Activity activity, Supplier<String> extra) {
+        this.activity = activity;
+        this.extra = extra;
+    }
+
+    public boolean isShowing() {
+        return view != null;
+    }
+
+    public void show() {
+        if (view != null) return;
+        view = new TextView(activity);
+        view.setTypeface(Typeface.MONOSPACE);
+        view.setTextSize(TypedValue.COMPLEX_UNIT_SP, 10);
+        view.setTextColor(Color.WHITE);
+        view.setBackgroundColor(0xB0000000);
+        int padding = (int) (6 * activity.getResources().getDisplayMetrics().density);
+        view.setPadding(padding, padding, padding, padding);
+        FrameLayout.LayoutParams lp = new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT, Gravity.TOP | Gravity.START);
+        ((FrameLayout) activity.findViewById(android.R.id.content)).addView(view, lp);
+        refresh.run();
+    }
+
+    public void hide() {
+        if (view == null) return;
+        view.removeCallbacks(refresh);
+        ((ViewGroup) view.getParent()).removeView(view);
+        view = null;
+    }
+
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            if (view == null) return;
+            String more = extra.get();
+            view.setText(more != null ? PerfMonitor.summary() + "\n" + more : PerfMonitor.summary());
+            view.postDelayed(this, REFRESH_MS);
+        }
+    };
+}
@@ -0,0 +1,66 @@
+package com.example.onedriveexplorer.metrics;
+
+import android.util.Log;
+import com.example.onedriveexplorer.models.GraphDateTime;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only text log kept as perf.log plus the previous perf.1.log; when the current file passes
+ * MAX_BYTES it becomes the previous one. Lines are written on a background thread, in order.
+ */
+final class RollingLog {
+    private static final String TAG = "RollingLog";
+    private static final long MAX_BYTES = 256 * 1024;
+
+    private final File current;
+    private final File previous;
+    private final ThreadPoolExecutor writer =
+            new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+
+    // Writer thread only
+    private Writer out;
+    private long written;
+
+    RollingLog(File dir) {
+        dir.mkdirs();
+        this.current = new File(dir, "perf.log");
+        this.previous = new File(dir, "perf.1.log");
+        writer.allowCoreThreadTimeOut(true);
+    }
+
+    void append(String line) {
+        final String stamped = GraphDateTime.format(System.currentTimeMillis()) + " " + line + "\n";
+        writer.execute(() -> write(stamped));
+    }
+
+    private void write(String line) {
+        try {
+            if (out == null) {
+                out = new OutputStreamWriter(new FileOutputStream(current, true), StandardCharsets.UTF_8);
+                written = current.length();
+            }
+            if (written > MAX_BYTES) {
+                out.close();
+                previous.delete();
+                current.renameTo(previous);
+                out = new OutputStreamWriter(new FileOutputStream(current, true), StandardCharsets.UTF_8);
+                written = 0;
+            }
+            out.write(line);
+            // Flushed per line so a crash loses nothing; lines are rare next to the work they describe
+            out.flush();
+            written += line.length();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write " + current, e);
+            out = null;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.onedriveexplorer.models;
+
+import com.google.gson.annotations.SerializedName;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON batch body for POST /$batch, at most 20 requests per batch
+ */
+public class BatchRequest {
+    @SerializedName("requests")
+    public List<Request> requests = new ArrayList<>();
+
+    public static class Request {
+        // Unique within the batch, echoed back in the matching response
+        @SerializedName("id")
+        public String id;
+
+        @SerializedName("method")
+        public String method;
+
+        // Relative to the API version, e.g. "/me/drive/items/{id}"
+        @SerializedName("url")
+        public String url;
+
+        @SerializedName("body")
+        public DriveItem body;
+
+        @SerializedName("headers")
+        public Map<String, String> headers;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.onedriveexplorer.models;
+
+import com.google.gson.JsonElement;
+import com.google.gson.annotations.SerializedName;
+import java.util.List;
+import java.util.Map;
+
+public class BatchResponse {
+    // Not necessarily in request order; match on id
+    @SerializedName("responses")
+    public List<Response> responses;
+
+    public static class Response {
+        @SerializedName("id")
+        public String id;
+
+        @SerializedName("status")
+        public int status;
+
+        @SerializedName("headers")
+        public Map<String, String> headers;
+
+        @SerializedName("body")
+        public JsonElement body;
+    }
+}
@@ -9,15 +9,41 @@ public class DriveItem {
     @SerializedName("name")
     public String name;
 
+    @SerializedName("size")
+    public long size;
+
     @SerializedName("folder")
     public Folder folder;
 
     @SerializedName("file")
     public File file;
 
+    // Changes whenever the item's metadata changes
+    @SerializedName("eTag")
+    public String eTag;
+
+    // Changes whenever the item's content changes
+    @SerializedName("cTag")
+    public String cTag;
+
+    // ISO 8601 in UTC, see GraphDateTime
+    @SerializedName("lastModifiedDateTime")
+    public String lastModifiedDateTime;
+
     @SerializedName("@microsoft.graph.downloadUrl")
     public String downloadUrl;
 
+    @SerializedName("parentReference")
+    public ItemReference parentReference;
+
+    // Only present in delta responses, marks a removed item
+    @SerializedName("deleted")
+    public Deleted deleted;
+
+    // Only present on the drive's root item
+    @SerializedName("root")
+    public Root root;
+
     public static class Folder {
         @SerializedName("childCount")
         public int childCount;
@@ -27,12 +53,44 @@ public class DriveItem {
         @SerializedName("mimeType")
         public String mimeType;
     }
+
+    public static class ItemReference {
+        @SerializedName("id")
+        public String id;
+
+        @SerializedName("driveId")
+        public String driveId;
+    }
+
+    public static class Deleted {
+        @SerializedName("state")
+        public String state;
+    }
+
+    public static class Root {
+    }
+
     public boolean isDirectory() {
         return folder != null;
     }
 
+    public boolean isDeleted() {
+        return deleted != null;
+    }
+
+    public String getParentId() {
+        return parentReference != null ? parentReference.id : null;
+    }
+
     public String getFormattedSize() {
-        if (file == null) return "";
+        return formatSize(file != null, size);
+    }
+
+    /**
+     * Same as getFormattedSize(), for callers that hold the fields rather than an item
+     */
+    public static String formatSize(boolean isFile, long size) {
+        if (!isFile) return "";
         // Simple placeholder for size formatting
         return "File"; 
     }
@@ -6,4 +6,12 @@ import java.util.List;
 public class DriveItemResponse {
     @SerializedName("value")
     public List<DriveItem> value;
+
+    // Absolute URL of the next page, null on the last page
+    @SerializedName("@odata.nextLink")
+    public String nextLink;
+
+    // Delta queries only: cursor for the next sync, present on the last page
+    @SerializedName("@odata.deltaLink")
+    public String deltaLink;
 }
@@ -0,0 +1,92 @@
+package com.example.onedriveexplorer.models;
+
+/**
+ * Converts Graph's ISO 8601 timestamps (e.g. 2024-05-01T09:30:00.123Z) to and from epoch
+ * milliseconds. Hand-rolled because SimpleDateFormat isn't thread-safe, java.time needs API 26,
+ * and listings parse thousands of these.
+ */
+public final class GraphDateTime {
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private GraphDateTime() {
+    }
+
+    /**
+     * @return epoch milliseconds, or 0 if value is null or not a timestamp
+     */
+    public static long parse(String value) {
+        if (value == null || value.length() < 19 || value.charAt(4) != '-' || value.charAt(10) != 'T') return 0;
+        try {
+            int year = Integer.parseInt(value.substring(0, 4));
+            int month = Integer.parseInt(value.substring(5, 7));
+            int day = Integer.parseInt(value.substring(8, 10));
+            int hour = Integer.parseInt(value.substring(11, 13));
+            int minute = Integer.parseInt(value.substring(14, 16));
+            int second = Integer.parseInt(value.substring(17, 19));
+            int pos = 19;
+            int millis = 0;
+            if (pos < value.length() && value.charAt(pos) == '.') {
+                // Graph sends up to 7 fraction digits; only the first 3 matter
+                int scale = 100;
+                for (pos++; pos < value.length() && Character.isDigit(value.charAt(pos)); pos++) {
+                    millis += (value.charAt(pos) - '0') * scale;
+                    scale /= 10;
+                }
+            }
+            long offsetMinutes = 0;
+            if (pos < value.length() && (value.charAt(pos) == '+' || value.charAt(pos) == '-')) {
+                int sign = value.charAt(pos) == '-' ? -1 : 1;
+                offsetMinutes = sign * (Integer.parseInt(value.substring(pos + 1, pos + 3)) * 60L
+                        + Integer.parseInt(value.substring(pos + 4, pos + 6)));
+            }
+            long seconds = ((daysFromCivil(year, month, day) * 24 + hour) * 60 + minute - offsetMinutes) * 60 + second;
+            return seconds * 1000 + millis;
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return the UTC timestamp, or null for 0
+     */
+    public static String format(long epochMillis) {
+        if (epochMillis == 0) return null;
+        long days = Math.floorDiv(epochMillis, MILLIS_PER_DAY);
+        long millisOfDay = Math.floorMod(epochMillis, MILLIS_PER_DAY);
+        // Civil date from days since 1970-01-01 (Howard Hinnant's algorithm)
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        long day = doy - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+        StringBuilder sb = new StringBuilder(24);
+        pad(sb, year, 4).append('-');
+        pad(sb, month, 2).append('-');
+        pad(sb, day, 2).append('T');
+        pad(sb, millisOfDay / 3_600_000, 2).append(':');
+        pad(sb, millisOfDay / 60_000 % 60, 2).append(':');
+        pad(sb, millisOfDay / 1000 % 60, 2);
+        if (millisOfDay % 1000 != 0) pad(sb.append('.'), millisOfDay % 1000, 3);
+        return sb.append('Z').toString();
+    }
+
+    private static long daysFromCivil(long year, long month, long day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = Math.floorDiv(year, 400);
+        long yoe = year - era * 400;
+        long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private static StringBuilder pad(StringBuilder sb, long value, int width) {
+        String digits = Long.toString(value);
+        for (int i = digits.length(); i < width; i++) sb.append('0');
+        return sb.append(digits);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.onedriveexplorer.models;
+
+import com.google.gson.annotations.SerializedName;
+import java.util.List;
+
+public class UploadSession {
+    // Pre-authenticated URL that receives the byte ranges
+    @SerializedName("uploadUrl")
+    public String uploadUrl;
+
+    @SerializedName("expirationDateTime")
+    public String expirationDateTime;
+
+    // Ranges the server still needs, e.g. "26214400-" or "0-1048575"
+    @SerializedName("nextExpectedRanges")
+    public List<String> nextExpectedRanges;
+}
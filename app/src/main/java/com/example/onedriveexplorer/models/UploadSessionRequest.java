@@ -0,0 +1,14 @@
+package com.example.onedriveexplorer.models;
+
+import com.google.gson.annotations.SerializedName;
+
+public class UploadSessionRequest {
+    @SerializedName("item")
+    public Item item = new Item();
+
+    public static class Item {
+        // "rename" keeps both files if the name is taken
+        @SerializedName("@microsoft.graph.conflictBehavior")
+        public String conflictBehavior = "rename";
+    }
+}
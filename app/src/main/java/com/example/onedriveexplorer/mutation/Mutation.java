@@ -0,0 +1,60 @@
+package com.example.onedriveexplorer.mutation;
+
+import com.example.onedriveexplorer.models.DriveItem;
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * One queued change to the drive, as stored in the write-ahead file
+ */
+public class Mutation {
+    public enum Type {
+        @SerializedName("createFolder") CREATE_FOLDER,
+        @SerializedName("rename") RENAME,
+        @SerializedName("delete") DELETE
+    }
+
+    @SerializedName("type")
+    public Type type;
+
+    // Item the change applies to; for CREATE_FOLDER the placeholder shown until the server answers
+    @SerializedName("itemId")
+    public String itemId;
+
+    // CREATE_FOLDER: folder to create it in
+    @SerializedName("parentId")
+    public String parentId;
+
+    // CREATE_FOLDER, RENAME: the (new) name
+    @SerializedName("name")
+    public String name;
+
+    // RENAME, DELETE: the item as it was, to roll back to if the server refuses
+    @SerializedName("before")
+    public DriveItem before;
+
+    static Mutation createFolder(String placeholderId, String parentId, String name) {
+        Mutation m = new Mutation();
+        m.type = Type.CREATE_FOLDER;
+        m.itemId = placeholderId;
+        m.parentId = parentId;
+        m.name = name;
+        return m;
+    }
+
+    static Mutation rename(DriveItem before, String newName) {
+        Mutation m = new Mutation();
+        m.type = Type.RENAME;
+        m.itemId = before.id;
+        m.name = newName;
+        m.before = before;
+        return m;
+    }
+
+    static Mutation delete(DriveItem before) {
+        Mutation m = new Mutation();
+        m.type = Type.DELETE;
+        m.itemId = before.id;
+        m.before = before;
+        return m;
+    }
+}
@@ -0,0 +1,478 @@
+package com.example.onedriveexplorer.mutation;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import com.example.onedriveexplorer.models.DriveItem;
+import com.example.onedriveexplorer.network.BatchExecutor;
+import com.example.onedriveexplorer.network.OneDriveClient;
+import com.example.onedriveexplorer.network.OneDriveService;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Creates, renames and deletes optimistically: the caches change at once, the change is
+ * written to a write-ahead file, and Graph is told afterwards, one change at a time in the
+ * order they were made (runs of deletes go out as one $batch).
+ *
+ * Changes still waiting are coalesced: renaming twice sends the last name, renaming a folder
+ * that isn't created yet just changes the name it will be created with, and deleting an item
+ * drops its pending renames, or its creation altogether. A change the server refuses is rolled
+ * back in the caches. Without network the queue keeps everything, across restarts too, and
+ * sends it once setOnline(true) is called. Public methods run on the main thread.
+ */
+public class MutationQueue {
+    private static final String TAG = "MutationQueue";
+    private static final String FILE_NAME = "mutations.json";
+    // Ids of folders created offline, until the server assigns the real one
+    private static final String PLACEHOLDER_PREFIX = "local-";
+    private static final long MIN_RETRY_DELAY_MS = 2000;
+    private static final long MAX_RETRY_DELAY_MS = 60_000;
+
+    public interface Listener {
+        /**
+         * Patch the caches; called for optimistic changes, server confirmations and rollbacks alike
+         */
+        void onChanges(List<DriveItem> updatedItems, List<String> deletedIds);
+
+        /**
+         * The server refused a change; its effect has already been rolled back
+         */
+        void onFailed(Mutation mutation, String message);
+
+        void onPendingChanged(int pending, boolean waitingForNetwork);
+    }
+
+    private final OneDriveService service;
+    private final BatchExecutor batchExecutor;
+    private final File file;
+    private final Listener listener;
+    private final Gson gson = OneDriveClient.getGson();
+    // Writes are small and must stay in order
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable retry = this::drain;
+
+    // Oldest first; the first `sending` entries are with the server and are never coalesced
+    private final List<Mutation> pending = new ArrayList<>();
+    private int sending;
+    private Call<DriveItem> call;
+    private boolean loaded;
+    // Changes made before the saved queue is merged; coalescing them earlier would miss it
+    private final List<Runnable> deferred = new ArrayList<>();
+    private boolean started;
+    private boolean online = true;
+    private boolean unreachable;  // last attempt failed without an answer
+    private boolean shutdown;
+    private long retryDelayMs = MIN_RETRY_DELAY_MS;
+
+    public MutationQueue(OneDriveService service, BatchExecutor batchExecutor, File dir, Listener listener) {
+        this.service = service;
+        this.batchExecutor = batchExecutor;
+        this.file = new File(dir, FILE_NAME);
+        this.listener = listener;
+        load();
+    }
+
+    public static boolean isPlaceholder(String itemId) {
+        return itemId != null && itemId.startsWith(PLACEHOLDER_PREFIX);
+    }
+
+    /**
+     * Begin sending, once requests can be authenticated
+     */
+    public void start() {
+        started = true;
+        drain();
+    }
+
+    /**
+     * Connectivity changed; coming back online sends what is waiting right away
+     */
+    public void setOnline(boolean online) {
+        this.online = online;
+        if (online) {
+            unreachable = false;
+            retryDelayMs = MIN_RETRY_DELAY_MS;
+            mainHandler.removeCallbacks(retry);
+            drain();
+        }
+        notifyPending();
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        mainHandler.removeCallbacks(retry);
+        if (call != null) call.cancel();
+        ioExecutor.shutdown();  // queued writes still finish
+    }
+
+    // ===== Making changes =====
+
+    public void createFolder(String parentId, String name) {
+        if (!loaded) {
+            deferred.add(() -> createFolder(parentId, name));
+            return;
+        }
+        Mutation m = Mutation.createFolder(PLACEHOLDER_PREFIX + UUID.randomUUID(), parentId, name);
+        pending.add(m);
+        persist();
+        listener.onChanges(Collections.singletonList(placeholder(m)), Collections.emptyList());
+        drain();
+    }
+
+    public void rename(DriveItem item, String newName) {
+        if (!loaded) {
+            deferred.add(() -> rename(item, newName));
+            return;
+        }
+        DriveItem renamed = copy(item);
+        renamed.name = newName;
+        listener.onChanges(Collections.singletonList(renamed), Collections.emptyList());
+
+        Mutation waiting = lastUnsent(item.id);
+        if (waiting != null && waiting.type != Mutation.Type.DELETE) {
+            // Not sent yet: create it with the new name, or send only the latest rename
+            waiting.name = newName;
+        } else {
+            pending.add(Mutation.rename(item, newName));
+        }
+        persist();
+        drain();
+    }
+
+    public void delete(List<DriveItem> items) {
+        if (!loaded) {
+            final List<DriveItem> copy = new ArrayList<>(items);
+            deferred.add(() -> delete(copy));
+            return;
+        }
+        List<String> ids = new ArrayList<>();
+        for (DriveItem item : items) ids.add(item.id);
+        listener.onChanges(Collections.emptyList(), ids);
+
+        for (DriveItem item : items) {
+            DriveItem before = item;
+            boolean created = false;
+            for (Iterator<Mutation> it = unsent(); it.hasNext(); ) {
+                Mutation m = it.next();
+                if (!item.id.equals(m.itemId)) continue;
+                if (m.type == Mutation.Type.CREATE_FOLDER) created = true;
+                // Roll back to the state before the first of them
+                if (m.type == Mutation.Type.RENAME && before == item) before = m.before;
+                it.remove();
+            }
+            if (created) {
+                // The server never heard of it; forget everything queued inside it as well
+                dropPlaceholders(Collections.singleton(item.id));
+            } else {
+                pending.add(Mutation.delete(before));
+            }
+        }
+        persist();
+        drain();
+    }
+
+    // ===== Sending =====
+
+    private void drain() {
+        if (!loaded || !started || shutdown || sending > 0 || !online || pending.isEmpty()) {
+            notifyPending();
+            return;
+        }
+        mainHandler.removeCallbacks(retry);
+        Mutation head = pending.get(0);
+        if (head.type == Mutation.Type.DELETE) {
+            sendDeletes();
+        } else {
+            send(head);
+        }
+        notifyPending();
+    }
+
+    private void send(final Mutation m) {
+        sending = 1;
+        DriveItem body = new DriveItem();
+        body.name = m.name;
+        if (m.type == Mutation.Type.CREATE_FOLDER) {
+            body.folder = new DriveItem.Folder();
+            call = service.createFolder(m.parentId, body);
+        } else {
+            call = service.renameItem(m.itemId, body);
+        }
+        call.enqueue(new retrofit2.Callback<DriveItem>() {
+            @Override
+            public void onResponse(Call<DriveItem> c, Response<DriveItem> response) {
+                if (shutdown) return;
+                sending = 0;
+                boolean retrying = settle(m, response.code(), response.body());
+                finishRound(retrying, false);
+            }
+
+            @Override
+            public void onFailure(Call<DriveItem> c, Throwable t) {
+                if (shutdown) return;
+                sending = 0;
+                finishRound(true, true);
+            }
+        });
+    }
+
+    // Consecutive deletes at the head are independent of each other and share one round trip
+    private void sendDeletes() {
+        final List<Mutation> run = new ArrayList<>();
+        List<BatchExecutor.Operation> ops = new ArrayList<>();
+        for (Mutation m : pending) {
+            if (m.type != Mutation.Type.DELETE || run.size() == BatchExecutor.MAX_BATCH_SIZE) break;
+            run.add(m);
+            ops.add(BatchExecutor.Operation.delete(m.itemId));
+        }
+        sending = run.size();
+        batchExecutor.execute(ops, results -> {
+            if (shutdown) return;
+            sending = 0;
+            boolean retrying = false;
+            boolean noAnswer = false;
+            for (int i = 0; i < run.size(); i++) {
+                int status = results.get(i).status;
+                retrying |= settle(run.get(i), status, null);
+                noAnswer |= status == 0;
+            }
+            finishRound(retrying, noAnswer);
+        });
+    }
+
+    /**
+     * Act on the server's answer to one change.
+     *
+     * @return true if it stays queued to be tried again
+     */
+    private boolean settle(Mutation m, int status, DriveItem result) {
+        if (status == 0 || status == 408 || status == 429 || status >= 500) return true;
+        pending.remove(m);
+        if (status >= 200 && status < 300) {
+            confirmed(m, result);
+        } else if (m.type == Mutation.Type.DELETE && status == 404) {
+            // Already gone, which is what we wanted
+        } else {
+            rollBack(m);
+            listener.onFailed(m, "HTTP " + status);
+        }
+        return false;
+    }
+
+    private void finishRound(boolean retrying, boolean noAnswer) {
+        persist();
+        if (retrying) {
+            unreachable = noAnswer;
+            mainHandler.postDelayed(retry, retryDelayMs);
+            retryDelayMs = Math.min(retryDelayMs * 2, MAX_RETRY_DELAY_MS);
+            notifyPending();
+        } else {
+            unreachable = false;
+            retryDelayMs = MIN_RETRY_DELAY_MS;
+            drain();
+        }
+    }
+
+    // ===== Outcomes =====
+
+    private void confirmed(Mutation m, DriveItem result) {
+        if (m.type == Mutation.Type.DELETE || result == null) {
+            if (m.type == Mutation.Type.CREATE_FOLDER) Log.w(TAG, "Folder created without a body; " + m.itemId + " stays local");
+            return;
+        }
+        List<String> deleted = new ArrayList<>();
+        if (m.type == Mutation.Type.CREATE_FOLDER) {
+            // Later changes were queued against the placeholder; point them at the real folder
+            for (Mutation later : pending) {
+                if (m.itemId.equals(later.itemId)) later.itemId = result.id;
+                if (m.itemId.equals(later.parentId)) later.parentId = result.id;
+                if (later.before != null && m.itemId.equals(later.before.id)) later.before.id = result.id;
+            }
+            deleted.add(m.itemId);
+        }
+        // Show the server's item, but with any change still queued for it
+        Mutation waiting = lastUnsent(result.id);
+        if (waiting == null || waiting.type != Mutation.Type.DELETE) {
+            DriveItem shown = result;
+            if (waiting != null && waiting.name != null) {
+                shown = copy(result);
+                shown.name = waiting.name;
+            }
+            listener.onChanges(Collections.singletonList(shown), deleted);
+        } else {
+            listener.onChanges(Collections.emptyList(), deleted);
+        }
+    }
+
+    private void rollBack(Mutation m) {
+        switch (m.type) {
+            case CREATE_FOLDER:
+                dropPlaceholders(Collections.singleton(m.itemId));
+                break;
+            case RENAME:
+                Mutation waiting = lastUnsent(m.itemId);
+                if (waiting != null) {
+                    // A later change still covers the item; it rolls back to the original state
+                    waiting.before = m.before;
+                } else {
+                    listener.onChanges(Collections.singletonList(m.before), Collections.emptyList());
+                }
+                break;
+            case DELETE:
+                listener.onChanges(Collections.singletonList(m.before), Collections.emptyList());
+                break;
+        }
+    }
+
+    /**
+     * Remove placeholder folders from the caches, with every queued change inside or on them
+     */
+    private void dropPlaceholders(Set<String> ids) {
+        Set<String> dropped = new HashSet<>(ids);
+        boolean more = true;
+        while (more) {
+            more = false;
+            for (Iterator<Mutation> it = unsent(); it.hasNext(); ) {
+                Mutation m = it.next();
+                if (!dropped.contains(m.itemId) && !dropped.contains(m.parentId)) continue;
+                it.remove();
+                if (m.type == Mutation.Type.CREATE_FOLDER && dropped.add(m.itemId)) more = true;
+            }
+        }
+        listener.onChanges(Collections.emptyList(), new ArrayList<>(dropped));
+    }
+
+    // ===== Queue helpers =====
+
+    private Iterator<Mutation> unsent() {
+        return pending.subList(sending, pending.size()).iterator();
+    }
+
+    private Mutation lastUnsent(String itemId) {
+        for (int i = pending.size() - 1; i >= sending; i--) {
+            if (itemId.equals(pending.get(i).itemId)) return pending.get(i);
+        }
+        return null;
+    }
+
+    private void notifyPending() {
+        listener.onPendingChanged(pending.size(), !pending.isEmpty() && (!online || unreachable));
+    }
+
+    private static DriveItem placeholder(Mutation m) {
+        DriveItem item = new DriveItem();
+        item.id = m.itemId;
+        item.name = m.name;
+        item.folder = new DriveItem.Folder();
+        item.parentReference = new DriveItem.ItemReference();
+        item.parentReference.id = m.parentId;
+        return item;
+    }
+
+    private static DriveItem copy(DriveItem item) {
+        DriveItem copy = new DriveItem();
+        copy.id = item.id;
+        copy.name = item.name;
+        copy.size = item.size;
+        copy.folder = item.folder;
+        copy.file = item.file;
+        copy.eTag = item.eTag;
+        copy.cTag = item.cTag;
+        copy.lastModifiedDateTime = item.lastModifiedDateTime;
+        copy.parentReference = item.parentReference;
+        return copy;
+    }
+
+    // ===== Write-ahead file =====
+
+    /**
+     * Read what an earlier run left unsent and show its effects again: a full refetch since
+     * then would have replaced them with the server's state
+     */
+    private void load() {
+        ioExecutor.execute(() -> {
+            List<Mutation> saved = null;
+            if (file.exists()) {
+                try (Reader in = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+                    saved = gson.fromJson(in, new TypeToken<List<Mutation>>() {}.getType());
+                } catch (IOException | JsonParseException e) {
+                    Log.w(TAG, "Discarding unreadable mutation queue", e);
+                }
+            }
+            final List<Mutation> result = saved;
+            mainHandler.post(() -> {
+                if (shutdown) return;
+                if (result != null && !result.isEmpty()) {
+                    pending.addAll(0, result);
+                    for (Mutation m : result) replay(m);
+                }
+                loaded = true;
+                // Changes made since construction are newer
+                for (Runnable r : deferred) r.run();
+                deferred.clear();
+                persist();
+                drain();
+            });
+        });
+    }
+
+    private void replay(Mutation m) {
+        switch (m.type) {
+            case CREATE_FOLDER:
+                listener.onChanges(Collections.singletonList(placeholder(m)), Collections.emptyList());
+                break;
+            case RENAME:
+                DriveItem renamed = copy(m.before);
+                renamed.name = m.name;
+                listener.onChanges(Collections.singletonList(renamed), Collections.emptyList());
+                break;
+            case DELETE:
+                listener.onChanges(Collections.emptyList(), Collections.singletonList(m.itemId));
+                break;
+        }
+    }
+
+    /**
+     * Write the queue to a temp file and swap it in, so a crash mid-write keeps the previous one
+     */
+    private void persist() {
+        final String json = gson.toJson(pending);
+        ioExecutor.execute(() -> {
+            File tmp = new File(file.getPath() + ".tmp");
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+                out.write(json);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write mutation queue", e);
+                tmp.delete();
+                return;
+            }
+            if (!tmp.renameTo(file)) {
+                Log.w(TAG, "Failed to replace mutation queue");
+                tmp.delete();
+            }
+        });
+    }
+}
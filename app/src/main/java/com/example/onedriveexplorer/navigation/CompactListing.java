@@ -0,0 +1,449 @@
+package com.example.onedriveexplorer.navigation;
+
+import com.example.onedriveexplorer.models.DriveItem;
+import com.example.onedriveexplorer.models.GraphDateTime;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Read-only folder listing stored column by column instead of as DriveItem objects.
+ *
+ * Ids, names, tags, sizes, dates and child counts live in parallel arrays, MIME types and parent
+ * ids are shared (interned) references, and download URLs are not kept at all; they expire
+ * within the hour and are fetched on demand. Columns are split into chunks of up to CHUNK_SIZE
+ * entries, so append() shares every full chunk with the original and copies only the last one.
+ * Each chunk is allocated for the entries it will hold, so a small folder costs little.
+ *
+ * Because it never changes, a listing is handed from FileNode to the adapter without copying.
+ * get() builds a fresh DriveItem on each call: items are identified by id, not identity
+ * (indexOf and contains compare ids). Use the column accessors on hot paths.
+ */
+public final class CompactListing extends AbstractList<DriveItem> implements RandomAccess {
+    private static final int CHUNK_SHIFT = 8;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final byte FLAG_FOLDER = 1;
+    private static final byte FLAG_FILE = 1 << 1;
+
+    private static final CompactListing EMPTY = new CompactListing(new Chunk[0], 0);
+
+    private final Chunk[] chunks;
+    private final int size;
+
+    private CompactListing(Chunk[] chunks, int size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    public static CompactListing empty() {
+        return EMPTY;
+    }
+
+    /**
+     * The items as a listing; a listing is returned as-is
+     */
+    public static CompactListing of(List<DriveItem> items) {
+        if (items instanceof CompactListing) return (CompactListing) items;
+        return EMPTY.append(items);
+    }
+
+    /**
+     * Collects a listing batch by batch as it is parsed, straight into chunks, so no List of
+     * the whole folder exists at any point. Used from one thread; build() once at the end.
+     */
+    public static final class Builder {
+        private final List<Chunk> chunks = new ArrayList<>();
+        private Chunk tail;
+        private int size;
+
+        public void addAll(List<DriveItem> items) {
+            for (int i = 0; i < items.size(); i++) {
+                if (tail == null || tail.size == CHUNK_SIZE) {
+                    tail = new Chunk(CHUNK_SIZE);
+                    chunks.add(tail);
+                }
+                tail.add(items.get(i));
+            }
+            size += items.size();
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public CompactListing build() {
+            if (size == 0) return EMPTY;
+            Chunk[] out = chunks.toArray(new Chunk[0]);
+            // The last chunk was allocated full size; keep only what it holds
+            Chunk last = out[out.length - 1];
+            if (last.size < CHUNK_SIZE) out[out.length - 1] = last.copy(last.size);
+            return new CompactListing(out, size);
+        }
+    }
+
+    /**
+     * A new listing with the items added at the end; this one is unchanged
+     */
+    public CompactListing append(List<DriveItem> items) {
+        if (items == null || items.isEmpty()) return this;
+        Chunk[] out = Arrays.copyOf(chunks, chunks.length + (items.size() + CHUNK_SIZE - 1) / CHUNK_SIZE + 1);
+        int count = chunks.length;
+        int n = items.size();
+        // Full chunks are shared; a partial last chunk is copied, with room for what follows
+        Chunk tail = null;
+        if (count > 0 && out[count - 1].size < CHUNK_SIZE) {
+            Chunk last = out[--count];
+            tail = last.copy(Math.min(CHUNK_SIZE, last.size + n));
+        }
+        for (int i = 0; i < n; i++) {
+            if (tail == null || tail.size == CHUNK_SIZE) {
+                if (tail != null) out[count++] = tail;
+                tail = new Chunk(Math.min(CHUNK_SIZE, n - i));
+            }
+            tail.add(items.get(i));
+        }
+        out[count++] = tail;
+        return new CompactListing(Arrays.copyOf(out, count), size + items.size());
+    }
+
+    /**
+     * A new listing with the item at index replaced
+     */
+    public CompactListing replace(int index, DriveItem item) {
+        checkIndex(index);
+        return edit(Collections.singletonMap(index, item), Collections.emptyList());
+    }
+
+    /**
+     * A new listing without the item at index
+     */
+    public CompactListing without(int index) {
+        checkIndex(index);
+        return edit(Collections.singletonMap(index, null), Collections.emptyList());
+    }
+
+    /**
+     * A new listing with many changes in one copy: each position in changes gets its item, or
+     * is removed if the item is null, and appended goes at the end. Positions out of range
+     * are ignored.
+     */
+    public CompactListing edit(Map<Integer, DriveItem> changes, List<DriveItem> appended) {
+        if (changes.isEmpty()) return append(appended);
+        int newSize = size + appended.size();
+        for (Map.Entry<Integer, DriveItem> change : changes.entrySet()) {
+            int index = change.getKey();
+            if (index >= 0 && index < size && change.getValue() == null) newSize--;
+        }
+        if (newSize == 0) return EMPTY;
+        // Copies column values directly; no DriveItems are built for the untouched entries
+        Chunk[] out = new Chunk[(newSize + CHUNK_SIZE - 1) / CHUNK_SIZE];
+        int count = 0;
+        int written = 0;
+        Chunk tail = null;
+        for (int i = 0; i < size + appended.size(); i++) {
+            DriveItem item;
+            if (i >= size) {
+                item = appended.get(i - size);
+            } else if (changes.containsKey(i)) {
+                item = changes.get(i);
+                if (item == null) continue;
+            } else {
+                item = null;
+            }
+            if (tail == null || tail.size == CHUNK_SIZE) {
+                if (tail != null) out[count++] = tail;
+                tail = new Chunk(Math.min(CHUNK_SIZE, newSize - written));
+            }
+            written++;
+            if (item != null) {
+                tail.add(item);
+            } else {
+                tail.addFrom(chunks[i >>> CHUNK_SHIFT], i & CHUNK_MASK);
+            }
+        }
+        out[count++] = tail;
+        return new CompactListing(out, newSize);
+    }
+
+    /**
+     * A new listing of the entries at the given positions, in that order, e.g. a sorted
+     * or filtered view. Column values are copied; no DriveItems are built.
+     */
+    public CompactListing select(int[] positions, int count) {
+        if (count == 0) return EMPTY;
+        Chunk[] out = new Chunk[(count + CHUNK_SIZE - 1) / CHUNK_SIZE];
+        for (int i = 0; i < count; i++) {
+            if ((i & CHUNK_MASK) == 0) out[i >>> CHUNK_SHIFT] = new Chunk(Math.min(CHUNK_SIZE, count - i));
+            int p = positions[i];
+            checkIndex(p);
+            out[i >>> CHUNK_SHIFT].addFrom(chunks[p >>> CHUNK_SHIFT], p & CHUNK_MASK);
+        }
+        return new CompactListing(out, count);
+    }
+
+    /**
+     * True if this listing begins with exactly the entries of prefix, e.g. because it was
+     * made by appending to it. Shared chunks are recognised without looking inside.
+     */
+    public boolean startsWith(CompactListing prefix) {
+        if (prefix == this) return true;
+        if (prefix.size > size) return false;
+        for (int c = 0; c < prefix.chunks.length; c++) {
+            Chunk theirs = prefix.chunks[c];
+            Chunk mine = chunks[c];
+            if (theirs == mine) continue;
+            for (int j = 0; j < theirs.size; j++) {
+                if (!Objects.equals(theirs.ids[j], mine.ids[j])
+                        || !Objects.equals(theirs.eTags[j], mine.eTags[j])
+                        || !Objects.equals(theirs.names[j], mine.names[j])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // ===== List =====
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public DriveItem get(int index) {
+        checkIndex(index);
+        return chunks[index >>> CHUNK_SHIFT].toItem(index & CHUNK_MASK);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return o instanceof DriveItem ? indexOfId(((DriveItem) o).id) : -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    public int indexOfId(String id) {
+        if (id == null) return -1;
+        for (int c = 0; c < chunks.length; c++) {
+            Chunk chunk = chunks[c];
+            for (int j = 0; j < chunk.size; j++) {
+                if (id.equals(chunk.ids[j])) return (c << CHUNK_SHIFT) + j;
+            }
+        }
+        return -1;
+    }
+
+    // ===== Column accessors =====
+
+    public String getId(int index) {
+        checkIndex(index);
+        return chunks[index >>> CHUNK_SHIFT].ids[index & CHUNK_MASK];
+    }
+
+    public String getName(int index) {
+        checkIndex(index);
+        return chunks[index >>> CHUNK_SHIFT].names[index & CHUNK_MASK];
+    }
+
+    public String getETag(int index) {
+        checkIndex(index);
+        return chunks[index >>> CHUNK_SHIFT].eTags[index & CHUNK_MASK];
+    }
+
+    public String getCTag(int index) {
+        checkIndex(index);
+        return chunks[index >>> CHUNK_SHIFT].cTags[index & CHUNK_MASK];
+    }
+
+    public boolean isFolder(int index) {
+        checkIndex(index);
+        return (chunks[index >>> CHUNK_SHIFT].flags[index & CHUNK_MASK] & FLAG_FOLDER) != 0;
+    }
+
+    public boolean isFile(int index) {
+        checkIndex(index);
+        return (chunks[index >>> CHUNK_SHIFT].flags[index & CHUNK_MASK] & FLAG_FILE) != 0;
+    }
+
+    /**
+     * Child count of a folder, 0 for anything else
+     */
+    public int getChildCount(int index) {
+        checkIndex(index);
+        return chunks[index >>> CHUNK_SHIFT].childCounts[index & CHUNK_MASK];
+    }
+
+    public long getSize(int index) {
+        checkIndex(index);
+        return chunks[index >>> CHUNK_SHIFT].sizes[index & CHUNK_MASK];
+    }
+
+    /**
+     * Last modified time in epoch milliseconds, 0 if unknown
+     */
+    public long getModified(int index) {
+        checkIndex(index);
+        return chunks[index >>> CHUNK_SHIFT].modified[index & CHUNK_MASK];
+    }
+
+    public String getMimeType(int index) {
+        checkIndex(index);
+        return chunks[index >>> CHUNK_SHIFT].mimeTypes[index & CHUNK_MASK];
+    }
+
+    /**
+     * Rough heap footprint, for NodeCache's memory budget
+     */
+    public long estimatedBytes() {
+        long bytes = 32 + 4L * chunks.length;
+        for (Chunk chunk : chunks) bytes += chunk.bytes;
+        return bytes;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+    }
+
+    /**
+     * Up to capacity (at most CHUNK_SIZE) entries. Filled once while a listing is built, never
+     * changed after.
+     */
+    private static final class Chunk {
+        // The chunk and the headers of its 12 arrays
+        private static final long HEADER_BYTES = 24 + 12 * 16;
+        // 7 reference and a boolean column, two longs, an int and a byte per entry
+        private static final long SLOT_BYTES = 8 * 4 + 2 * 8 + 4 + 1;
+
+        final String[] ids;
+        final String[] names;
+        final String[] eTags;
+        final String[] cTags;
+        final String[] mimeTypes;
+        final String[] parentIds;
+        final String[] driveIds;
+        final boolean[] hasParentRef;
+        final long[] sizes;
+        final long[] modified;  // epoch millis; the ISO string is rebuilt on get()
+        final int[] childCounts;
+        final byte[] flags;
+        int size;
+        long bytes;
+
+        Chunk(int capacity) {
+            ids = new String[capacity];
+            names = new String[capacity];
+            eTags = new String[capacity];
+            cTags = new String[capacity];
+            mimeTypes = new String[capacity];
+            parentIds = new String[capacity];
+            driveIds = new String[capacity];
+            hasParentRef = new boolean[capacity];
+            sizes = new long[capacity];
+            modified = new long[capacity];
+            childCounts = new int[capacity];
+            flags = new byte[capacity];
+            bytes = HEADER_BYTES + capacity * SLOT_BYTES;
+        }
+
+        void add(DriveItem item) {
+            int j = size++;
+            ids[j] = item.id;
+            names[j] = item.name;
+            eTags[j] = item.eTag;
+            cTags[j] = item.cTag;
+            sizes[j] = item.size;
+            modified[j] = GraphDateTime.parse(item.lastModifiedDateTime);
+            if (item.folder != null) {
+                flags[j] |= FLAG_FOLDER;
+                childCounts[j] = item.folder.childCount;
+            }
+            if (item.file != null) {
+                flags[j] |= FLAG_FILE;
+                mimeTypes[j] = item.file.mimeType;
+            }
+            if (item.parentReference != null) {
+                hasParentRef[j] = true;
+                parentIds[j] = item.parentReference.id;
+                driveIds[j] = item.parentReference.driveId;
+            }
+            // MIME types and parent references are interned by the parser and shared
+            bytes += stringBytes(item.id) + stringBytes(item.name) + stringBytes(item.eTag) + stringBytes(item.cTag);
+        }
+
+        void addFrom(Chunk src, int k) {
+            int j = size++;
+            ids[j] = src.ids[k];
+            names[j] = src.names[k];
+            eTags[j] = src.eTags[k];
+            cTags[j] = src.cTags[k];
+            mimeTypes[j] = src.mimeTypes[k];
+            parentIds[j] = src.parentIds[k];
+            driveIds[j] = src.driveIds[k];
+            hasParentRef[j] = src.hasParentRef[k];
+            sizes[j] = src.sizes[k];
+            modified[j] = src.modified[k];
+            childCounts[j] = src.childCounts[k];
+            flags[j] = src.flags[k];
+            bytes += stringBytes(ids[j]) + stringBytes(names[j]) + stringBytes(eTags[j]) + stringBytes(cTags[j]);
+        }
+
+        Chunk copy(int capacity) {
+            Chunk c = new Chunk(capacity);
+            System.arraycopy(ids, 0, c.ids, 0, size);
+            System.arraycopy(names, 0, c.names, 0, size);
+            System.arraycopy(eTags, 0, c.eTags, 0, size);
+            System.arraycopy(cTags, 0, c.cTags, 0, size);
+            System.arraycopy(mimeTypes, 0, c.mimeTypes, 0, size);
+            System.arraycopy(parentIds, 0, c.parentIds, 0, size);
+            System.arraycopy(driveIds, 0, c.driveIds, 0, size);
+            System.arraycopy(hasParentRef, 0, c.hasParentRef, 0, size);
+            System.arraycopy(sizes, 0, c.sizes, 0, size);
+            System.arraycopy(modified, 0, c.modified, 0, size);
+            System.arraycopy(childCounts, 0, c.childCounts, 0, size);
+            System.arraycopy(flags, 0, c.flags, 0, size);
+            c.size = size;
+            // Same strings, differently sized columns
+            c.bytes += bytes - (HEADER_BYTES + ids.length * SLOT_BYTES);
+            return c;
+        }
+
+        DriveItem toItem(int j) {
+            DriveItem item = new DriveItem();
+            item.id = ids[j];
+            item.name = names[j];
+            item.eTag = eTags[j];
+            item.cTag = cTags[j];
+            item.size = sizes[j];
+            item.lastModifiedDateTime = GraphDateTime.format(modified[j]);
+            if ((flags[j] & FLAG_FOLDER) != 0) {
+                item.folder = new DriveItem.Folder();
+                item.folder.childCount = childCounts[j];
+            }
+            if ((flags[j] & FLAG_FILE) != 0) {
+                item.file = new DriveItem.File();
+                item.file.mimeType = mimeTypes[j];
+            }
+            if (hasParentRef[j]) {
+                item.parentReference = new DriveItem.ItemReference();
+                item.parentReference.id = parentIds[j];
+                item.parentReference.driveId = driveIds[j];
+            }
+            return item;
+        }
+
+        private static long stringBytes(String s) {
+            return s == null ? 0 : 40 + 2L * s.length();
+        }
+    }
+}
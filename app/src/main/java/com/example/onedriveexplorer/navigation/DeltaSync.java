@@ -0,0 +1,264 @@
+package com.example.onedriveexplorer.navigation;
+
+import com.example.onedriveexplorer.models.DriveItem;
+import com.example.onedriveexplorer.models.DriveItemResponse;
+import com.example.onedriveexplorer.network.OneDriveService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Incremental sync of cached listings through the Graph /delta endpoint.
+ *
+ * Keeps one delta cursor for the drive. A sync downloads only what changed since
+ * that cursor and patches the affected FileNode caches and the node map in place,
+ * instead of refetching every folder. However many changes arrive, each affected
+ * listing is rebuilt once.
+ */
+class DeltaSync {
+    private static final int HTTP_GONE = 410;  // cursor expired, Graph asks for a full resync
+
+    private final OneDriveService cloudService;
+    private final NodeCache nodeMap;
+    private final FileNode rootNode;
+    private String deltaLink;
+    private boolean syncing;
+
+    interface Listener {
+        void onApplied(Set<FileNode> changedNodes);
+        void onResyncRequired();
+        void onError(String message);
+    }
+
+    DeltaSync(OneDriveService service, NodeCache nodeMap, FileNode rootNode) {
+        this.cloudService = service;
+        this.nodeMap = nodeMap;
+        this.rootNode = rootNode;
+    }
+
+    boolean hasToken() {
+        return deltaLink != null;
+    }
+
+    String getDeltaLink() {
+        return deltaLink;
+    }
+
+    // Cursor restored from disk; a stale one is answered with 410 and triggers a resync
+    void setDeltaLink(String deltaLink) {
+        this.deltaLink = deltaLink;
+    }
+
+    boolean isSyncing() {
+        return syncing;
+    }
+
+    /**
+     * Grab a cursor for "now" without enumerating the drive, then run next either way.
+     * Listings must be fetched from next: a cursor taken after a listing would miss the
+     * changes made in between.
+     */
+    void acquireLatestToken(Runnable next) {
+        cloudService.rootDelta("latest").enqueue(new retrofit2.Callback<DriveItemResponse>() {
+            @Override
+            public void onResponse(Call<DriveItemResponse> call, Response<DriveItemResponse> response) {
+                if (response.isSuccessful() && response.body() != null && response.body().deltaLink != null) {
+                    deltaLink = response.body().deltaLink;
+                }
+                next.run();
+            }
+
+            @Override
+            public void onFailure(Call<DriveItemResponse> call, Throwable t) {
+                // No cursor yet, refresh() keeps using full refetches
+                next.run();
+            }
+        });
+    }
+
+    /**
+     * Pull all changes since the stored cursor and apply them to the cached nodes
+     */
+    void sync(Listener listener) {
+        if (deltaLink == null || syncing) return;
+        syncing = true;
+        fetchPage(deltaLink, new ArrayList<>(), listener);
+    }
+
+    // Pages are collected and applied together at the end
+    private void fetchPage(String link, List<DriveItem> changes, Listener listener) {
+        cloudService.followDelta(link).enqueue(new retrofit2.Callback<DriveItemResponse>() {
+            @Override
+            public void onResponse(Call<DriveItemResponse> call, Response<DriveItemResponse> response) {
+                if (response.code() == HTTP_GONE) {
+                    syncing = false;
+                    deltaLink = null;
+                    listener.onResyncRequired();
+                    return;
+                }
+                if (!response.isSuccessful() || response.body() == null) {
+                    syncing = false;
+                    listener.onError("Sync failed: " + response.code());
+                    return;
+                }
+
+                DriveItemResponse body = response.body();
+                if (body.value != null) changes.addAll(body.value);
+
+                if (body.nextLink != null) {
+                    fetchPage(body.nextLink, changes, listener);
+                } else {
+                    syncing = false;
+                    Set<FileNode> changed = apply(changes, Collections.emptyList(), false);
+                    if (body.deltaLink != null) deltaLink = body.deltaLink;
+                    listener.onApplied(changed);
+                }
+            }
+
+            @Override
+            public void onFailure(Call<DriveItemResponse> call, Throwable t) {
+                syncing = false;
+                listener.onError(t.getMessage());
+            }
+        });
+    }
+
+    // ===== Applying changes =====
+
+    /**
+     * Patch caches with changes the app made itself (e.g. batch results), using the same rules
+     * as a delta page, except that new items also show up in partially paged folders at once
+     */
+    Set<FileNode> applyLocal(List<DriveItem> updatedItems, List<String> deletedIds) {
+        return apply(updatedItems, deletedIds, true);
+    }
+
+    /**
+     * Apply changes in order, a later one for the same id winning. Cached listings are scanned
+     * once for the changed ids; each affected listing is then rebuilt in a single copy.
+     * Returns the nodes whose listing changed.
+     */
+    private Set<FileNode> apply(List<DriveItem> items, List<String> deletedIds, boolean local) {
+        // id -> its latest state; null means deleted
+        Map<String, DriveItem> latest = new LinkedHashMap<>();
+        for (String id : deletedIds) latest.put(id, null);
+        for (DriveItem item : items) {
+            if (item.root != null) {
+                // Our root node is keyed "root"; learn the real id so children can find their parent
+                nodeMap.put(item.id, rootNode);
+                continue;
+            }
+            latest.put(item.id, item.isDeleted() ? null : item);
+        }
+        Set<FileNode> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (latest.isEmpty()) return changed;
+
+        // Where each updated item belongs, if that folder has been visited; in delta order, for appending
+        Map<String, FileNode> parents = new LinkedHashMap<>();
+        for (DriveItem item : latest.values()) {
+            if (item == null || item.getParentId() == null) continue;
+            FileNode parent = nodeMap.get(item.getParentId());
+            if (parent != null) parents.put(item.id, parent);
+        }
+
+        // Replaced in their parent's listing, removed from any other (deleted or moved away)
+        Map<FileNode, Map<Integer, DriveItem>> edits = new IdentityHashMap<>();
+        Set<String> inPlace = new HashSet<>();
+        for (FileNode node : distinctCachedNodes()) {
+            CompactListing listing = node.cachedItems;
+            for (int i = 0; i < listing.size(); i++) {
+                String id = listing.getId(i);
+                if (!latest.containsKey(id)) continue;
+                Map<Integer, DriveItem> edit = edits.get(node);
+                if (edit == null) {
+                    edit = new HashMap<>();
+                    edits.put(node, edit);
+                }
+                DriveItem item = latest.get(id);
+                if (item != null && parents.get(id) == node) {
+                    edit.put(i, item);
+                    inPlace.add(id);
+                } else {
+                    edit.put(i, null);
+                }
+            }
+        }
+
+        // New and moved-in items are appended. Partially paged folders pick delta items up from their
+        // remaining pages; the user's own are appended anyway and replaced if a later page has them
+        Map<FileNode, List<DriveItem>> additions = new IdentityHashMap<>();
+        for (Map.Entry<String, FileNode> entry : parents.entrySet()) {
+            FileNode parent = entry.getValue();
+            if (inPlace.contains(entry.getKey()) || !parent.isCached() || (!local && parent.hasMorePages())) continue;
+            List<DriveItem> added = additions.get(parent);
+            if (added == null) {
+                added = new ArrayList<>();
+                additions.put(parent, added);
+            }
+            added.add(latest.get(entry.getKey()));
+        }
+
+        Set<FileNode> touched = Collections.newSetFromMap(new IdentityHashMap<>());
+        touched.addAll(edits.keySet());
+        touched.addAll(additions.keySet());
+        for (FileNode node : touched) {
+            Map<Integer, DriveItem> edit = edits.get(node);
+            List<DriveItem> added = additions.get(node);
+            node.cachedItems = node.cachedItems.edit(
+                    edit != null ? edit : Collections.emptyMap(),
+                    added != null ? added : Collections.emptyList());
+            node.recomputeSize();
+            changed.add(node);
+        }
+
+        // Keep visited folders' own metadata (name, parent) current and forget deleted ones
+        Set<FileNode> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Map.Entry<String, DriveItem> entry : latest.entrySet()) {
+            FileNode node = nodeMap.get(entry.getKey());
+            if (node == null || node == rootNode) continue;
+            DriveItem item = entry.getValue();
+            if (item == null) {
+                removed.add(node);
+            } else {
+                node.fileItem = item;
+                FileNode parent = parents.get(item.id);
+                if (parent != null) node.parentNode = parent;
+            }
+        }
+        if (!removed.isEmpty()) dropSubtrees(removed);
+        return changed;
+    }
+
+    private Set<FileNode> distinctCachedNodes() {
+        // The root is listed under two ids
+        Set<FileNode> nodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (FileNode node : nodeMap.values()) {
+            if (node.isCached()) nodes.add(node);
+        }
+        return nodes;
+    }
+
+    /**
+     * Forget deleted folders and every visited node below them, in one pass over the node map
+     */
+    private void dropSubtrees(Set<FileNode> removed) {
+        List<String> doomed = new ArrayList<>();
+        for (Map.Entry<String, FileNode> entry : nodeMap.entrySet()) {
+            for (FileNode n = entry.getValue(); n != null; n = n.parentNode) {
+                if (removed.contains(n)) {
+                    doomed.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+        for (String id : doomed) nodeMap.remove(id);
+    }
+}
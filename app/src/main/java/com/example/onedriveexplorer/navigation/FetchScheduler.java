@@ -0,0 +1,96 @@
+package com.example.onedriveexplorer.navigation;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Decides when speculative folder fetches may run.
+ *
+ * Foreground (navigation) fetches always go out immediately. Prefetches wait in a queue
+ * and only start while no foreground fetch is in flight, at most a few at a time.
+ */
+class FetchScheduler {
+    static final int DEFAULT_MAX_PREFETCHES = 2;
+
+    interface PrefetchStarter {
+        /**
+         * @return false if the node turned out not to need a fetch after all
+         */
+        boolean start(FileNode node);
+    }
+
+    private final ArrayDeque<FileNode> queue = new ArrayDeque<>();
+    private final Set<FileNode> queued = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final PrefetchStarter starter;
+    private int maxPrefetches = DEFAULT_MAX_PREFETCHES;
+    private boolean prefetchEnabled = true;
+    private int foregroundRunning;
+    private int prefetchRunning;
+
+    FetchScheduler(PrefetchStarter starter) {
+        this.starter = starter;
+    }
+
+    void setPrefetchEnabled(boolean enabled) {
+        this.prefetchEnabled = enabled;
+        if (!enabled) clearQueue();
+    }
+
+    boolean isPrefetchEnabled() {
+        return prefetchEnabled;
+    }
+
+    void setMaxPrefetches(int max) {
+        this.maxPrefetches = max;
+        pump();
+    }
+
+    void enqueue(FileNode node) {
+        if (!prefetchEnabled || !queued.add(node)) return;
+        queue.add(node);
+        pump();
+    }
+
+    /**
+     * Drop prefetches that haven't started yet, e.g. after the visible rows changed
+     */
+    void clearQueue() {
+        queue.clear();
+        queued.clear();
+    }
+
+    // ===== Bookkeeping, called by NavigationManager =====
+
+    void foregroundStarted() {
+        foregroundRunning++;
+    }
+
+    void foregroundFinished() {
+        foregroundRunning--;
+        pump();
+    }
+
+    void prefetchFinished() {
+        prefetchRunning--;
+        pump();
+    }
+
+    /**
+     * The user navigated into a folder that was being prefetched; it now counts as foreground
+     */
+    void promote() {
+        prefetchRunning--;
+        foregroundRunning++;
+    }
+
+    private void pump() {
+        while (prefetchEnabled && foregroundRunning == 0 && prefetchRunning < maxPrefetches && !queue.isEmpty()) {
+            FileNode node = queue.poll();
+            queued.remove(node);
+            prefetchRunning++;
+            if (!starter.start(node)) prefetchRunning--;
+        }
+    }
+}
@@ -1,29 +1,113 @@
 package com.example.onedriveexplorer.navigation;
 
 import com.example.onedriveexplorer.models.DriveItem;
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class FileNode {
     public DriveItem fileItem;
     public FileNode parentNode;
-    public List<DriveItem> cachedItems;  // null = not fetched, empty = empty folder
-    
+    public CompactListing cachedItems;   // null = not fetched, empty = empty folder; never edited in place
+    public String nextLink;              // null = all pages loaded
+    long estimatedBytes;                 // rough heap footprint of cachedItems, see NodeCache
+    int fetchGeneration;                 // bumped per listing request, see NavigationManager.fetchFolder
+    public String etag;                  // ETag of the cached listing, for If-None-Match
+    public long validatedAt;             // when the listing was last confirmed by the server (ms)
+
     public FileNode(DriveItem fileItem, FileNode parent) {
         this.fileItem = fileItem;
         this.parentNode = parent;
         this.cachedItems = null;
     }
-    
+
     public boolean isCached() {
         return cachedItems != null;
     }
-    
+
+    public boolean hasMorePages() {
+        return nextLink != null;
+    }
+
     public void cache(List<DriveItem> items) {
-        this.cachedItems = items != null ? new ArrayList<>(items) : new ArrayList<>();
+        this.cachedItems = items != null ? CompactListing.of(items) : CompactListing.empty();
+        recomputeSize();
+    }
+
+    /**
+     * Cache the first page of a listing and remember where the next one starts
+     */
+    public void cacheFirstPage(List<DriveItem> items, String nextLink) {
+        cache(items);
+        this.nextLink = nextLink;
+    }
+
+    /**
+     * Append a follow-up page to the cached listing. Items the app already appended itself
+     * (see DeltaSync.applyLocal) are dropped from their earlier position.
+     *
+     * @return true if earlier entries were dropped, false if the page was only appended
+     */
+    public boolean appendPage(List<DriveItem> items, String nextLink) {
+        if (cachedItems == null) cachedItems = CompactListing.empty();
+        Set<String> pageIds = new HashSet<>();
+        for (DriveItem item : items) pageIds.add(item.id);
+        Map<Integer, DriveItem> duplicates = new HashMap<>();
+        for (int i = 0; i < cachedItems.size(); i++) {
+            if (pageIds.contains(cachedItems.getId(i))) duplicates.put(i, null);
+        }
+        cachedItems = duplicates.isEmpty() ? cachedItems.append(items) : cachedItems.edit(duplicates, items);
+        recomputeSize();
+        this.nextLink = nextLink;
+        return !duplicates.isEmpty();
     }
-    
+
     public void clearCache() {
         this.cachedItems = null;
+        this.nextLink = null;
+        this.estimatedBytes = 0;
+        this.etag = null;
+        this.validatedAt = 0;
+    }
+
+    public void markValidated() {
+        this.validatedAt = System.currentTimeMillis();
+    }
+
+    public boolean isStale(long maxAgeMs) {
+        return System.currentTimeMillis() - validatedAt > maxAgeMs;
+    }
+
+    /**
+     * Whether a freshly fetched first page shows exactly what is cached.
+     * Items are compared by id and eTag, which Graph bumps on any metadata change.
+     */
+    public boolean matchesFirstPage(CompactListing page, String pageNextLink) {
+        if (cachedItems == null || page == null) return false;
+        if (pageNextLink == null) {
+            // The whole folder fits in one page: the cache must be exactly that page
+            if (nextLink != null || cachedItems.size() != page.size()) return false;
+        } else if (cachedItems.size() < page.size()) {
+            return false;
+        }
+        for (int i = 0; i < page.size(); i++) {
+            if (!page.getId(i).equals(cachedItems.getId(i))) return false;
+            String eTag = page.getETag(i);
+            String name = page.getName(i);
+            boolean same = eTag != null
+                    ? eTag.equals(cachedItems.getETag(i))
+                    : name != null && name.equals(cachedItems.getName(i));
+            if (!same) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Recount the footprint after cachedItems was replaced
+     */
+    void recomputeSize() {
+        this.estimatedBytes = cachedItems != null ? cachedItems.estimatedBytes() : 0;
     }
 }
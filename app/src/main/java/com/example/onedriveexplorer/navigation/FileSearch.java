@@ -0,0 +1,222 @@
+package com.example.onedriveexplorer.navigation;
+
+import android.os.Handler;
+import android.os.Looper;
+import com.example.onedriveexplorer.models.DriveItem;
+import com.example.onedriveexplorer.models.DriveItemResponse;
+import com.example.onedriveexplorer.network.OneDriveService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Search by name over every cached listing, optionally topped up by Graph's search.
+ *
+ * The index lives on its own thread. NavigationManager hands it the cached listings after
+ * they change; since listings are immutable, an unchanged folder is recognised by reference
+ * and an appended page only indexes the new items. Queries run on the same thread and take
+ * a millisecond or two, so results follow the keyboard. Public methods are called on the
+ * main thread, and listeners are called there too.
+ */
+public class FileSearch {
+    public static final int MAX_RESULTS = 200;
+    private static final int REMOTE_PAGE_SIZE = 50;
+    private static final int MAX_REMOTE_PAGES = 3;
+
+    public interface Listener {
+        /**
+         * @param complete false while Graph results may still be merged in
+         */
+        void onResults(List<DriveItem> results, boolean complete);
+        void onError(String message);
+    }
+
+    private final OneDriveService service;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // One thread keeps index updates and queries in order; it stops while idle
+    private final ThreadPoolExecutor indexExecutor =
+            new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+
+    // Index thread only
+    private final NameIndex index = new NameIndex();
+    private final Map<FileNode, Indexed> indexed = new IdentityHashMap<>();
+
+    // Main thread only
+    private volatile int generation;  // read on the index thread to skip superseded queries
+    private Call<DriveItemResponse> remoteCall;
+    private List<DriveItem> localResults;
+    private List<DriveItem> remoteResults;
+    private boolean remotePending;
+
+    public FileSearch(OneDriveService service) {
+        this.service = service;
+        indexExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Bring the index in line with the cached listings of these nodes; nodes missing
+     * from the collection (evicted, deleted) drop out
+     */
+    public void sync(Collection<FileNode> nodes) {
+        // The root is listed under two ids
+        final Map<FileNode, CompactListing> listings = new IdentityHashMap<>();
+        for (FileNode node : nodes) {
+            if (node.isCached()) listings.put(node, node.cachedItems);
+        }
+        indexExecutor.execute(() -> apply(listings));
+    }
+
+    /**
+     * Search the index; with includeRemote also ask Graph, whose results are merged in
+     * below the local ones as they arrive. A new search or cancel() supersedes this one.
+     */
+    public void search(final String query, boolean includeRemote, final Listener listener) {
+        cancel();
+        final int gen = generation;
+        remotePending = includeRemote;
+        indexExecutor.execute(() -> {
+            if (gen != generation) return;  // the user has typed on
+            List<DriveItem> found = toItems(index.query(query, MAX_RESULTS));
+            mainHandler.post(() -> {
+                if (gen != generation) return;
+                localResults = found;
+                publish(listener);
+            });
+        });
+        if (includeRemote) fetchRemote(gen, query, null, 0, listener);
+    }
+
+    /**
+     * Drop the running search; its listener isn't called again
+     */
+    public void cancel() {
+        generation++;
+        if (remoteCall != null) remoteCall.cancel();
+        remoteCall = null;
+        localResults = null;
+        remoteResults = null;
+        remotePending = false;
+    }
+
+    // ===== Results =====
+
+    private void publish(Listener listener) {
+        if (localResults == null) return;  // local results come first, they are the better ones
+        List<DriveItem> merged = new ArrayList<>(localResults);
+        if (remoteResults != null) {
+            Set<String> ids = new HashSet<>();
+            for (DriveItem item : localResults) ids.add(item.id);
+            for (DriveItem item : remoteResults) {
+                if (ids.add(item.id)) merged.add(item);
+            }
+        }
+        listener.onResults(merged, !remotePending);
+    }
+
+    private void fetchRemote(final int gen, final String query, String nextLink, final int page, final Listener listener) {
+        Call<DriveItemResponse> call;
+        try {
+            call = nextLink != null
+                    ? service.listNextPage(nextLink)
+                    // OData string literal: a quote is escaped by doubling it
+                    : service.searchDrive(query.replace("'", "''"), REMOTE_PAGE_SIZE);
+        } catch (IllegalArgumentException e) {
+            // Retrofit refuses path values such as "." or ".."; the index has answered those
+            remotePending = false;
+            publish(listener);
+            return;
+        }
+        remoteCall = call;
+        call.enqueue(new retrofit2.Callback<DriveItemResponse>() {
+            @Override
+            public void onResponse(Call<DriveItemResponse> call, Response<DriveItemResponse> response) {
+                if (gen != generation) return;
+                DriveItemResponse body = response.body();
+                if (!response.isSuccessful() || body == null) {
+                    remotePending = false;
+                    publish(listener);
+                    listener.onError("Search failed: " + response.code());
+                    return;
+                }
+                if (remoteResults == null) remoteResults = new ArrayList<>();
+                if (body.value != null) remoteResults.addAll(body.value);
+                remotePending = body.nextLink != null && page + 1 < MAX_REMOTE_PAGES;
+                publish(listener);
+                if (remotePending) fetchRemote(gen, query, body.nextLink, page + 1, listener);
+            }
+
+            @Override
+            public void onFailure(Call<DriveItemResponse> call, Throwable t) {
+                if (call.isCanceled() || gen != generation) return;
+                remotePending = false;
+                publish(listener);
+                listener.onError("Search failed: " + t.getMessage());
+            }
+        });
+    }
+
+    // ===== Index thread =====
+
+    private static class Indexed {
+        final CompactListing listing;
+        final int[] docIds;  // per position; rewritten when the index compacts
+
+        Indexed(CompactListing listing, int[] docIds) {
+            this.listing = listing;
+            this.docIds = docIds;
+        }
+    }
+
+    private void apply(Map<FileNode, CompactListing> listings) {
+        Iterator<Map.Entry<FileNode, Indexed>> it = indexed.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<FileNode, Indexed> entry = it.next();
+            if (listings.containsKey(entry.getKey())) continue;
+            for (int docId : entry.getValue().docIds) index.remove(docId);
+            it.remove();
+        }
+
+        for (Map.Entry<FileNode, CompactListing> entry : listings.entrySet()) {
+            CompactListing listing = entry.getValue();
+            Indexed current = indexed.get(entry.getKey());
+            if (current != null && current.listing == listing) continue;
+
+            int from = 0;
+            int[] docIds = new int[listing.size()];
+            if (current != null && listing.startsWith(current.listing)) {
+                // A page was appended: only the new items need indexing
+                from = current.listing.size();
+                System.arraycopy(current.docIds, 0, docIds, 0, from);
+            } else if (current != null) {
+                for (int docId : current.docIds) index.remove(docId);
+            }
+            for (int i = from; i < listing.size(); i++) docIds[i] = index.add(listing, i);
+            indexed.put(entry.getKey(), new Indexed(listing, docIds));
+        }
+
+        int[] moved = index.compactIfNeeded();
+        if (moved != null) {
+            for (Indexed entry : indexed.values()) {
+                for (int i = 0; i < entry.docIds.length; i++) entry.docIds[i] = moved[entry.docIds[i]];
+            }
+        }
+    }
+
+    private static List<DriveItem> toItems(List<NameIndex.Doc> docs) {
+        if (docs.isEmpty()) return Collections.emptyList();
+        List<DriveItem> items = new ArrayList<>(docs.size());
+        for (NameIndex.Doc doc : docs) items.add(doc.listing.get(doc.position));
+        return items;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.onedriveexplorer.navigation;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Persists TreeSnapshots to a single file so the last-known tree can be shown
+ * on cold start, before the token round trip completes.
+ * All disk I/O runs on one background thread; results are delivered on the main thread.
+ */
+public class ListingCacheStore {
+    private static final String TAG = "ListingCacheStore";
+    private static final String FILE_NAME = "listing_cache.bin";
+
+    private final File file;
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public interface LoadCallback {
+        void onLoaded(TreeSnapshot snapshot);  // null when nothing usable is on disk
+    }
+
+    public ListingCacheStore(File dir) {
+        this.file = new File(dir, FILE_NAME);
+    }
+
+    public void load(LoadCallback callback) {
+        ioExecutor.execute(() -> {
+            TreeSnapshot snapshot = null;
+            if (file.exists()) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                    snapshot = TreeSnapshot.readFrom(in);
+                } catch (IOException | RuntimeException e) {
+                    // Corrupt data must not keep the app from starting; it is only a cache
+                    Log.w(TAG, "Discarding unreadable listing cache", e);
+                    file.delete();
+                }
+            }
+            final TreeSnapshot result = snapshot;
+            mainHandler.post(() -> callback.onLoaded(result));
+        });
+    }
+
+    /**
+     * Write the snapshot to a temp file and swap it in, so a crash mid-write never corrupts the cache
+     */
+    public void save(TreeSnapshot snapshot) {
+        if (snapshot == null) return;
+        ioExecutor.execute(() -> {
+            File tmp = new File(file.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                snapshot.writeTo(out);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write listing cache", e);
+                tmp.delete();
+                return;
+            }
+            if (!tmp.renameTo(file)) {
+                Log.w(TAG, "Failed to replace listing cache");
+                tmp.delete();
+            }
+        });
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.onedriveexplorer.navigation;
+
+import android.os.Handler;
+import android.os.Looper;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorts and filters folder listings for display, off the main thread.
+ *
+ * Names are compared through CollationKeys, computed once per item and kept per folder, so
+ * a sort is a run of byte comparisons instead of Collator calls; when a page is appended
+ * only the new items get keys. Results are cached per folder and order and reused as long
+ * as the folder's listing is the same instance. Public methods and listeners run on the
+ * main thread.
+ */
+public class ListingSorter {
+    private static final int MAX_CACHED_RESULTS = 16;
+    private static final int MAX_CACHED_KEYS = 8;
+
+    public enum SortKey { NAME, TYPE, SIZE, DATE }
+
+    public enum TypeFilter {
+        ALL, FOLDERS, DOCUMENTS, IMAGES, VIDEOS, AUDIO;
+
+        boolean matches(CompactListing listing, int i) {
+            if (this == ALL) return true;
+            if (this == FOLDERS) return listing.isFolder(i);
+            String mime = listing.getMimeType(i);
+            if (mime == null) return false;
+            switch (this) {
+                case IMAGES:
+                    return mime.startsWith("image/");
+                case VIDEOS:
+                    return mime.startsWith("video/");
+                case AUDIO:
+                    return mime.startsWith("audio/");
+                default:
+                    return mime.startsWith("text/") || mime.equals("application/pdf") || mime.equals("application/rtf")
+                            || mime.contains("officedocument") || mime.contains("opendocument")
+                            || mime.contains("msword") || mime.contains("ms-excel") || mime.contains("ms-powerpoint");
+            }
+        }
+    }
+
+    /**
+     * What to show and in which order; folders always come first
+     */
+    public static final class Order {
+        public static final Order DEFAULT = new Order(SortKey.NAME, false, TypeFilter.ALL);
+
+        public final SortKey key;
+        public final boolean descending;
+        public final TypeFilter filter;
+
+        public Order(SortKey key, boolean descending, TypeFilter filter) {
+            this.key = key;
+            this.descending = descending;
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Order)) return false;
+            Order other = (Order) o;
+            return key == other.key && descending == other.descending && filter == other.filter;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, descending, filter);
+        }
+    }
+
+    public interface Listener {
+        void onSorted(CompactListing sorted);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor sortExecutor =
+            new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+
+    // Main thread only
+    private final Map<ResultKey, Result> results = new LinkedHashMap<ResultKey, Result>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ResultKey, Result> eldest) {
+            return size() > MAX_CACHED_RESULTS;
+        }
+    };
+    private volatile int generation;  // read on the sort thread to skip superseded sorts
+
+    // Sort thread only
+    private Collator collator;
+    private final Map<FileNode, Keys> keys = new LinkedHashMap<FileNode, Keys>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<FileNode, Keys> eldest) {
+            return size() > MAX_CACHED_KEYS;
+        }
+    };
+
+    public ListingSorter() {
+        sortExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Sort and filter a folder's listing. A cached result is delivered right away, otherwise
+     * the work is queued and the listener called when it is done, unless a later sort()
+     * or cancel() superseded it.
+     */
+    public void sort(final FileNode node, final CompactListing source, final Order order, final Listener listener) {
+        final int gen = ++generation;
+        final ResultKey resultKey = new ResultKey(node, order);
+        Result cached = results.get(resultKey);
+        if (cached != null && cached.source == source) {
+            listener.onSorted(cached.sorted);
+            return;
+        }
+        sortExecutor.execute(() -> {
+            if (gen != generation) return;
+            CompactListing sorted = sortNow(node, source, order);
+            mainHandler.post(() -> {
+                results.put(resultKey, new Result(source, sorted));
+                if (gen == generation) listener.onSorted(sorted);
+            });
+        });
+    }
+
+    /**
+     * Drop the pending sort; its listener isn't called
+     */
+    public void cancel() {
+        generation++;
+    }
+
+    // ===== Sort thread =====
+
+    private CompactListing sortNow(FileNode node, CompactListing source, Order order) {
+        final Keys k = keysFor(node, source);
+        int count = 0;
+        Integer[] positions = new Integer[source.size()];
+        for (int i = 0; i < source.size(); i++) {
+            if (order.filter.matches(source, i)) positions[count++] = i;
+        }
+
+        Comparator<Integer> byName = (a, b) -> k.names[a].compareTo(k.names[b]);
+        Comparator<Integer> primary;
+        switch (order.key) {
+            case TYPE:
+                primary = (a, b) -> k.extensions[a].compareTo(k.extensions[b]);
+                break;
+            case SIZE:
+                primary = (a, b) -> Long.compare(source.getSize(a), source.getSize(b));
+                break;
+            case DATE:
+                primary = (a, b) -> Long.compare(source.getModified(a), source.getModified(b));
+                break;
+            default:
+                primary = byName;
+        }
+        if (order.descending) primary = primary.reversed();
+        final Comparator<Integer> within = order.key == SortKey.NAME ? primary : primary.thenComparing(byName);
+        Arrays.sort(positions, 0, count, (a, b) -> {
+            boolean folderA = source.isFolder(a);
+            if (folderA != source.isFolder(b)) return folderA ? -1 : 1;
+            return within.compare(a, b);
+        });
+
+        int[] sorted = new int[count];
+        for (int i = 0; i < count; i++) sorted[i] = positions[i];
+        return source.select(sorted, count);
+    }
+
+    /**
+     * Sort keys for every item of the listing; a listing that grew by appending keeps the old keys
+     */
+    private Keys keysFor(FileNode node, CompactListing source) {
+        Keys existing = keys.get(node);
+        if (existing != null && existing.source == source) return existing;
+        if (collator == null) {
+            collator = Collator.getInstance();
+            collator.setStrength(Collator.SECONDARY);  // "report" and "Report" sort together
+        }
+
+        int from = existing != null && source.startsWith(existing.source) ? existing.source.size() : 0;
+        CollationKey[] names = new CollationKey[source.size()];
+        String[] extensions = new String[source.size()];
+        if (from > 0) {
+            System.arraycopy(existing.names, 0, names, 0, from);
+            System.arraycopy(existing.extensions, 0, extensions, 0, from);
+        }
+        for (int i = from; i < source.size(); i++) {
+            String name = source.getName(i) != null ? source.getName(i) : "";
+            names[i] = collator.getCollationKey(name);
+            int dot = name.lastIndexOf('.');
+            extensions[i] = dot > 0 && !source.isFolder(i) ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+        }
+        Keys fresh = new Keys(source, names, extensions);
+        keys.put(node, fresh);
+        return fresh;
+    }
+
+    private static final class Keys {
+        final CompactListing source;
+        final CollationKey[] names;
+        final String[] extensions;
+
+        Keys(CompactListing source, CollationKey[] names, String[] extensions) {
+            this.source = source;
+            this.names = names;
+            this.extensions = extensions;
+        }
+    }
+
+    // ===== Results =====
+
+    private static final class ResultKey {
+        final FileNode node;
+        final Order order;
+
+        ResultKey(FileNode node, Order order) {
+            this.node = node;
+            this.order = order;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ResultKey)) return false;
+            ResultKey other = (ResultKey) o;
+            return node == other.node && order.equals(other.order);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(node) * 31 + order.hashCode();
+        }
+    }
+
+    private static final class Result {
+        final CompactListing source;
+        final CompactListing sorted;
+
+        Result(CompactListing source, CompactListing sorted) {
+            this.source = source;
+            this.sorted = sorted;
+        }
+    }
+}
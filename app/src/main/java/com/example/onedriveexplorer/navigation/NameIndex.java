@@ -0,0 +1,292 @@
+package com.example.onedriveexplorer.navigation;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Inverted index over item names, for FileSearch. Not thread-safe: FileSearch only
+ * touches it from its index thread.
+ *
+ * Names are normalized (lower case, accents stripped) and posted under every trigram, so
+ * a query of three or more characters matches anywhere in a name. Shorter queries match
+ * the start of a word: each word is also posted under its first one and two characters.
+ * Removed documents leave a hole that queries skip; the index is rebuilt once holes
+ * outnumber live documents.
+ */
+final class NameIndex {
+    // Rebuilding is only worth it once the holes are a real cost
+    private static final int MIN_COMPACT_HOLES = 4096;
+    // Keys of word prefixes, kept apart from trigram keys
+    private static final long PREFIX_KEY = 1L << 48;
+    private static final char NO_CHAR = '\uFFFF';
+
+    /**
+     * One indexed entry: an item of a cached listing
+     */
+    static final class Doc {
+        final CompactListing listing;
+        final int position;
+        final String key;       // normalized name
+        final boolean folder;
+
+        Doc(CompactListing listing, int position) {
+            this.listing = listing;
+            this.position = position;
+            this.key = normalize(listing.getName(position));
+            this.folder = listing.isFolder(position);
+        }
+
+        String id() {
+            return listing.getId(position);
+        }
+    }
+
+    private final ArrayList<Doc> docs = new ArrayList<>();  // doc id -> doc, null once removed
+    private final Map<Long, IntList> postings = new HashMap<>();
+    private int live;
+
+    int size() {
+        return live;
+    }
+
+    /**
+     * @return the new document's id, for remove()
+     */
+    int add(CompactListing listing, int position) {
+        Doc doc = new Doc(listing, position);
+        int docId = docs.size();
+        docs.add(doc);
+        live++;
+        post(doc.key, docId);
+        return docId;
+    }
+
+    void remove(int docId) {
+        if (docs.get(docId) == null) return;
+        docs.set(docId, null);
+        live--;
+    }
+
+    /**
+     * Rebuild postings without the holes if there are enough of them.
+     *
+     * @return old doc id -> new doc id (-1 for removed), or null if nothing moved
+     */
+    int[] compactIfNeeded() {
+        int holes = docs.size() - live;
+        if (holes < MIN_COMPACT_HOLES || holes < live) return null;
+        int[] moved = new int[docs.size()];
+        List<Doc> kept = new ArrayList<>(live);
+        for (int i = 0; i < docs.size(); i++) {
+            Doc doc = docs.get(i);
+            moved[i] = doc != null ? kept.size() : -1;
+            if (doc != null) kept.add(doc);
+        }
+        docs.clear();
+        postings.clear();
+        for (Doc doc : kept) {
+            post(doc.key, docs.size());
+            docs.add(doc);
+        }
+        return moved;
+    }
+
+    /**
+     * Up to limit documents matching every word of the query, best first: exact name,
+     * name prefix, word prefixes, then anywhere; folders before files, then shorter names.
+     */
+    List<Doc> query(String query, int limit) {
+        String normalized = normalize(query).trim();
+        List<String> terms = new ArrayList<>();
+        for (String term : normalized.split("\\s+")) {
+            if (!term.isEmpty()) terms.add(term);
+        }
+        if (terms.isEmpty()) return Collections.emptyList();
+
+        // Walk the shortest posting list, check the other terms on the name itself
+        IntList driver = null;
+        for (String term : terms) {
+            for (long key : keysOf(term)) {
+                IntList list = postings.get(key);
+                if (list == null) return Collections.emptyList();
+                if (driver == null || list.size < driver.size) driver = list;
+            }
+        }
+        if (driver == null) return Collections.emptyList();  // only punctuation too short for a trigram
+
+        // Keep the best `limit` matches in a heap whose head is the worst of them; a broad
+        // query can match most of the index, and sorting all of it would cost a frame or more
+        PriorityQueue<Match> best = new PriorityQueue<>(limit + 1, Collections.reverseOrder());
+        for (int i = 0; i < driver.size; i++) {
+            Doc doc = docs.get(driver.values[i]);
+            if (doc == null || !matchesAll(doc.key, terms)) continue;
+            Match match = new Match(doc, order(doc, normalized, terms));
+            if (best.size() < limit) {
+                best.add(match);
+            } else if (match.compareTo(best.peek()) < 0) {
+                best.poll();
+                best.add(match);
+            }
+        }
+
+        Match[] sorted = best.toArray(new Match[0]);
+        Arrays.sort(sorted);
+        List<Doc> results = new ArrayList<>(sorted.length);
+        Set<String> seen = new HashSet<>();
+        for (Match match : sorted) {
+            // An item moved between two cached folders may briefly be in both
+            if (seen.add(match.doc.id())) results.add(match.doc);
+        }
+        return results;
+    }
+
+    private static final class Match implements Comparable<Match> {
+        final Doc doc;
+        final long order;
+
+        Match(Doc doc, long order) {
+            this.doc = doc;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Match other) {
+            int byOrder = Long.compare(order, other.order);
+            return byOrder != 0 ? byOrder : doc.key.compareTo(other.doc.key);
+        }
+    }
+
+    // ===== Matching =====
+
+    private static boolean matchesAll(String key, List<String> terms) {
+        for (String term : terms) {
+            if (term.length() >= 3 ? !key.contains(term) : !startsWord(key, term)) return false;
+        }
+        return true;
+    }
+
+    // Rank, then folders first, then shorter names, packed into one comparable number
+    private static long order(Doc doc, String whole, List<String> terms) {
+        long rank;
+        if (doc.key.equals(whole)) {
+            rank = 0;
+        } else if (doc.key.startsWith(whole)) {
+            rank = 1;
+        } else {
+            rank = 2;
+            for (String term : terms) {
+                if (!startsWord(doc.key, term)) {
+                    rank = 3;
+                    break;
+                }
+            }
+        }
+        return rank << 33 | (doc.folder ? 0L : 1L << 32) | doc.key.length();
+    }
+
+    private static boolean startsWord(String key, String term) {
+        int from = 0;
+        while (true) {
+            int at = key.indexOf(term, from);
+            if (at < 0) return false;
+            if (at == 0 || !Character.isLetterOrDigit(key.charAt(at - 1))) return true;
+            from = at + 1;
+        }
+    }
+
+    // ===== Keys =====
+
+    private void post(String key, int docId) {
+        for (long k : keysOf(key, true)) {
+            IntList list = postings.get(k);
+            if (list == null) {
+                list = new IntList();
+                postings.put(k, list);
+            }
+            // A name can repeat a key ("aaaa"); doc ids only grow, so the last entry tells
+            if (list.size == 0 || list.values[list.size - 1] != docId) list.add(docId);
+        }
+    }
+
+    // Keys a query term must be posted under
+    private static long[] keysOf(String term) {
+        return keysOf(term, false);
+    }
+
+    /**
+     * For a name: all trigrams plus the one- and two-character prefix of every word.
+     * For a query term: its trigrams, or its word-prefix key when shorter than three.
+     */
+    private static long[] keysOf(String s, boolean name) {
+        int n = s.length();
+        if (!name && n < 3) {
+            if (!Character.isLetterOrDigit(s.charAt(0))) return new long[0];
+            return new long[] {prefixKey(s.charAt(0), n > 1 ? s.charAt(1) : NO_CHAR)};
+        }
+        long[] keys = new long[Math.max(0, n - 2) + (name ? 2 * n : 0)];
+        int count = 0;
+        for (int i = 0; i + 2 < n; i++) {
+            keys[count++] = ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+        }
+        if (name) {
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (!Character.isLetterOrDigit(c) || (i > 0 && Character.isLetterOrDigit(s.charAt(i - 1)))) continue;
+                keys[count++] = prefixKey(c, NO_CHAR);
+                if (i + 1 < n) keys[count++] = prefixKey(c, s.charAt(i + 1));
+            }
+        }
+        return count == keys.length ? keys : Arrays.copyOf(keys, count);
+    }
+
+    private static long prefixKey(char first, char second) {
+        return PREFIX_KEY | ((long) first << 16) | second;
+    }
+
+    /**
+     * Lower case without accents, so a query typed without them still finds accented names
+     */
+    static String normalize(String s) {
+        if (s == null) return "";
+        boolean ascii = true;
+        for (int i = 0; i < s.length() && ascii; i++) ascii = s.charAt(i) < 0x80;
+        if (!ascii) {
+            String decomposed = Normalizer.normalize(s, Normalizer.Form.NFD);
+            StringBuilder sb = new StringBuilder(decomposed.length());
+            for (int i = 0; i < decomposed.length(); i++) {
+                char c = decomposed.charAt(i);
+                if (Character.getType(c) != Character.NON_SPACING_MARK) sb.append(c);
+            }
+            s = sb.toString();
+        }
+        StringBuilder lower = null;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            char l = Character.toLowerCase(c);
+            if (l != c && lower == null) lower = new StringBuilder(s.substring(0, i));
+            if (lower != null) lower.append(l);
+        }
+        return lower != null ? lower.toString() : s;
+    }
+
+    /**
+     * Growable int array; posting lists hold hundreds of thousands of ids, boxing them would double the index
+     */
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+    }
+}
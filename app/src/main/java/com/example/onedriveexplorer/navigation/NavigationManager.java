@@ -1,32 +1,78 @@
 package com.example.onedriveexplorer.navigation;
 
+import android.os.Handler;
+import android.os.Looper;
+import com.example.onedriveexplorer.metrics.PerfMonitor;
 import com.example.onedriveexplorer.models.DriveItem;
 import com.example.onedriveexplorer.models.DriveItemResponse;
+import com.example.onedriveexplorer.network.DriveItemStreamParser;
+import com.example.onedriveexplorer.network.OneDriveClient;
 import com.example.onedriveexplorer.network.OneDriveService;
-import java.util.HashMap;
+import com.example.onedriveexplorer.network.RequestScheduler;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.Response;
 
 public class NavigationManager {
+    public static final int DEFAULT_PAGE_SIZE = 200;
+    private static final int MAX_PREFETCH_PER_VIEW = 8;
+    private static final long REVALIDATE_AFTER_MS = 30_000;
+    private static final int HTTP_NOT_MODIFIED = 304;
+    // Items per UI update while a listing is still being parsed
+    private static final int STREAM_BATCH_SIZE = DriveItemStreamParser.DEFAULT_BATCH_SIZE;
+
     private FileNode currentNode;
     private FileNode rootNode;
-    private Map<String, FileNode> nodeMap = new HashMap<>();
+    private final NodeCache nodeMap = new NodeCache();
     private OneDriveService cloudService;
+    // Same API in the scheduler's background lane, for fetches nobody is waiting on
+    private final OneDriveService backgroundService;
     private Callback callback;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private FileNode pageLoadingNode;  // node whose next page is in flight, if any
+    private Call<DriveItemResponse> pageCall;
+    private final Map<FileNode, Fetch> inFlight = new IdentityHashMap<>();
+    private final FetchScheduler scheduler = new FetchScheduler(this::startPrefetch);
+    private final DeltaSync deltaSync;
+    private String rootGraphId;  // the root's real id once known, see learnRootId
+    private final DriveItemStreamParser parser = new DriveItemStreamParser(OneDriveClient.getGson());
+    private final FileSearch search;
+    private boolean searchSyncPending;
+    // Listing bodies are read off the network here; the thread blocks on I/O, so don't share it
+    private final ExecutorService parseExecutor = Executors.newCachedThreadPool();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     
     public interface Callback {
         void onSuccess(List<DriveItem> items, boolean fromCache);
+        void onPageLoaded(List<DriveItem> items);  // next page of the current folder
         void onError(String message);
         void onLoading();
     }
     
     public NavigationManager(DriveItem rootItem, OneDriveService service) {
+        this(rootItem, service, service);
+    }
+
+    /**
+     * Prefetches and silent revalidations go through backgroundService
+     */
+    public NavigationManager(DriveItem rootItem, OneDriveService service, OneDriveService backgroundService) {
         this.cloudService = service;
+        this.backgroundService = backgroundService;
         this.rootNode = new FileNode(rootItem, null);
         this.currentNode = rootNode;
         this.nodeMap.put(rootItem.id, rootNode);
+        this.deltaSync = new DeltaSync(service, nodeMap, rootNode);
+        this.search = new FileSearch(service);
     }
     
     /**
@@ -34,92 +80,513 @@ public class NavigationManager {
      * User clicks folder -> pass DriveItem here
      */
     public void navigateTo(DriveItem fileItem) {
-        // Check if node already exists
-        FileNode node = nodeMap.get(fileItem.id);
-        
-        if (node == null) {
-            // New folder - create node with current as parent
-            node = new FileNode(fileItem, currentNode);
-            nodeMap.put(fileItem.id, node);
-        }
-        
-        currentNode = node;
+        FileNode node = nodeFor(fileItem);
+        moveTo(node);
+        nodeMap.recordAccess(node.isCached());
         
         // Check cache
         if (node.isCached()) {
             if (callback != null) callback.onSuccess(node.cachedItems, true);
+            revalidateIfStale(node);
         } else {
             fetchFolder(node);
         }
     }
     
+    /**
+     * The folder's node, created on first sight under its parent if that is known
+     * (search results can come from anywhere), else under the current folder
+     */
+    private FileNode nodeFor(DriveItem folder) {
+        FileNode node = nodeMap.get(folder.id);
+        if (node == null) {
+            FileNode parent = folder.getParentId() != null ? nodeMap.get(folder.getParentId()) : null;
+            node = new FileNode(folder, parent != null ? parent : currentNode);
+            nodeMap.put(folder.id, node);
+        }
+        return node;
+    }
+
     /**
      * Navigate back
      * Press back button -> call this
      */
     public void goBack() {
         if (currentNode.parentNode != null) {
-            currentNode = currentNode.parentNode;
+            moveTo(currentNode.parentNode);
+            nodeMap.recordAccess(currentNode.isCached());
             if (callback != null) {
                 if (currentNode.isCached()) {
                     callback.onSuccess(currentNode.cachedItems, true);
+                    revalidateIfStale(currentNode);
                 } else {
                     fetchFolder(currentNode);
                 }
             }
         }
     }
-    
+
     /**
-     * Fetch and cache folder contents
+     * Make a node current and cancel listings nobody is waiting for anymore.
+     * The folder just left keeps its fetch, so tapping straight back in joins it.
+     * Queued prefetches belonged to the old folder's rows and are dropped.
      */
+    private void moveTo(FileNode node) {
+        FileNode left = currentNode;
+        currentNode = node;
+        nodeMap.touch(node);
+        scheduler.clearQueue();
+        // Its page would land in a folder no longer on screen
+        if (pageLoadingNode != node) cancelPageLoad();
+
+        for (FileNode pending : new ArrayList<>(inFlight.keySet())) {
+            if (pending != node && pending != left) cancelFetch(pending);
+        }
+    }
+    
     private void fetchFolder(FileNode node) {
-        if (callback != null) callback.onLoading();
+        fetchFolder(node, FetchKind.NAVIGATE);
+    }
+
+    /**
+     * Stale-while-revalidate: the cached listing is already on screen,
+     * check it against the server without a spinner
+     */
+    private void revalidateIfStale(FileNode node) {
+        if (node.isStale(REVALIDATE_AFTER_MS)) fetchFolder(node, FetchKind.REVALIDATE);
+    }
+
+    /**
+     * Fetch and cache folder contents.
+     * Concurrent requests for the same node share one call; REFRESH restarts it.
+     * A cached listing is fetched conditionally: 304 (or an identical first page)
+     * keeps the cache and the UI untouched.
+     * A folder that isn't cached yet is shown batch by batch while its body is parsed.
+     */
+    private void fetchFolder(FileNode node, FetchKind kind) {
+        final boolean loud = kind == FetchKind.NAVIGATE || kind == FetchKind.REFRESH;
+        final boolean prefetch = kind == FetchKind.PREFETCH;
+        if (loud && callback != null) callback.onLoading();
+
+        Fetch running = inFlight.get(node);
+        if (running != null) {
+            if (kind != FetchKind.REFRESH) {
+                // Already loading: whoever is current when it lands gets the result,
+                // and errors now too, since someone is waiting on the spinner
+                if (loud && !running.loud) {
+                    running.loud = true;
+                    // Still waiting in the background lane? Move it up
+                    OneDriveClient.getScheduler().promote(running.call.request());
+                }
+                if (!prefetch && running.prefetch) {
+                    running.prefetch = false;
+                    scheduler.promote();
+                }
+                return;
+            }
+            cancelFetch(node);
+        }
+        // Responses carrying an older generation were superseded and are dropped
+        final int generation = ++node.fetchGeneration;
+        String ifNoneMatch = node.isCached() ? node.etag : null;
         
-        Call<DriveItemResponse> call;
+        OneDriveService service = loud ? cloudService : backgroundService;
+        Call<ResponseBody> call;
         if ("root".equals(node.fileItem.id)) {
-            call = cloudService.listRootChildren();
+            call = service.streamRootChildren(pageSize, ifNoneMatch);
+        } else {
+            call = service.streamChildren(node.fileItem.id, pageSize, ifNoneMatch);
+        }
+        final Fetch fetch = new Fetch(call, prefetch, loud);
+        inFlight.put(node, fetch);
+        if (!prefetch) scheduler.foregroundStarted();
+
+        call.enqueue(new retrofit2.Callback<ResponseBody>() {
+            @Override
+            public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+                if (generation != node.fetchGeneration) {
+                    if (response.body() != null) response.body().close();
+                    return;
+                }
+
+                if (response.code() == HTTP_NOT_MODIFIED && node.isCached()) {
+                    endFetch(node);
+                    // Nothing downloaded or parsed, the cached listing is confirmed
+                    node.markValidated();
+                    if (fetch.loud && node == currentNode && callback != null) callback.onSuccess(node.cachedItems, true);
+                } else if (response.code() == HTTP_NOT_MODIFIED) {
+                    // The listing was evicted while the call was out; nothing left to confirm, fetch it whole
+                    endFetch(node);
+                    fetchFolder(node, fetch.loud && node == currentNode ? FetchKind.NAVIGATE : FetchKind.REVALIDATE);
+                } else if (response.isSuccessful() && response.body() != null) {
+                    // Headers are in; the body is still streaming and is parsed off the main thread.
+                    // A cached listing is on screen already and gets replaced whole, so no batches for it
+                    String etag = response.headers().get("ETag");
+                    boolean stream = !node.isCached();
+                    ResponseBody body = response.body();
+                    parseExecutor.execute(() -> parseListing(node, generation, fetch, body, etag, stream));
+                } else {
+                    endFetch(node);
+                    if (fetch.loud && node == currentNode && callback != null) callback.onError(failure("Failed to load", response.code()));
+                }
+            }
+
+            @Override
+            public void onFailure(Call<ResponseBody> call, Throwable t) {
+                if (call.isCanceled() || generation != node.fetchGeneration) return;
+                endFetch(node);
+                if (fetch.loud && node == currentNode && callback != null) callback.onError(t.getMessage());
+            }
+        });
+    }
+
+    // On parseExecutor. Cancelling the call closes the stream, which ends the parse with an IOException.
+    // Batches go straight into the listing's chunks; each is dropped once shown, if shown at all
+    private void parseListing(FileNode node, int generation, Fetch fetch, ResponseBody body,
+                              String etag, boolean stream) {
+        CompactListing.Builder listing = new CompactListing.Builder();
+        DriveItemStreamParser.BatchListener batches = batch -> {
+            listing.addAll(batch);
+            if (stream) mainHandler.post(() -> showBatch(node, generation, fetch, batch));
+        };
+        PerfMonitor.ParseTimer timer = PerfMonitor.startParse();
+        try (ResponseBody b = body) {
+            String nextLink = parser.parse(b.charStream(), STREAM_BATCH_SIZE, batches).nextLink;
+            CompactListing items = listing.build();
+            timer.finish(items.size());
+            mainHandler.post(() -> onListingParsed(node, generation, fetch, items, nextLink, etag));
+        } catch (IOException | RuntimeException e) {
+            // JsonParseException for a malformed item; nothing may escape this bare thread
+            mainHandler.post(() -> {
+                if (generation != node.fetchGeneration) return;
+                endFetch(node);
+                if (fetch.loud && node == currentNode && callback != null) callback.onError("Failed to load: " + e.getMessage());
+            });
+        }
+    }
+
+    /**
+     * Put a parsed batch on screen: the first one replaces the list, later ones append.
+     * If the folder stopped being current at any point the rest waits for the full listing.
+     */
+    private void showBatch(FileNode node, int generation, Fetch fetch, List<DriveItem> batch) {
+        if (generation != node.fetchGeneration || callback == null || fetch.streamBroken) return;
+        if (node != currentNode) {
+            fetch.streamBroken = true;
+            return;
+        }
+        if (!fetch.streamStarted) {
+            fetch.streamStarted = true;
+            callback.onSuccess(batch, false);
         } else {
-            call = cloudService.listChildren(node.fileItem.id);
+            callback.onPageLoaded(batch);
+        }
+    }
+
+    private void onListingParsed(FileNode node, int generation, Fetch fetch, CompactListing items,
+                                 String nextLink, String etag) {
+        if (generation != node.fetchGeneration) return;
+        endFetch(node);
+
+        if (node.matchesFirstPage(items, nextLink)) {
+            // Server ignored If-None-Match but nothing changed; keep loaded pages
+            node.etag = etag;
+            node.markValidated();
+            if (fetch.loud && node == currentNode && callback != null) callback.onSuccess(node.cachedItems, true);
+            return;
         }
+        // Show the first page right away, the rest is pulled in by loadNextPage()
+        node.cacheFirstPage(items, nextLink);
+        node.etag = etag;
+        node.markValidated();
+        if (node == rootNode) learnRootId(node.cachedItems);
+        nodeMap.trim(currentNode);
+        listingsChanged();
+        // Still cached for later, but only the current folder reaches the screen.
+        // After streamed batches this diffs to no change; it also covers a stream that was cut short
+        if (node == currentNode && callback != null) callback.onSuccess(node.cachedItems, false);
+    }
 
-        call.enqueue(new retrofit2.Callback<DriveItemResponse>() {
+    private void cancelFetch(FileNode node) {
+        Fetch fetch = inFlight.get(node);
+        if (fetch == null) return;
+        node.fetchGeneration++;
+        fetch.call.cancel();
+        endFetch(node);
+    }
+
+    // Exactly once per fetch, whether it completed or was cancelled
+    private void endFetch(FileNode node) {
+        Fetch fetch = inFlight.remove(node);
+        if (fetch == null) return;
+        if (fetch.prefetch) {
+            scheduler.prefetchFinished();
+        } else {
+            scheduler.foregroundFinished();
+        }
+    }
+
+    // ===== Prefetch =====
+
+    /**
+     * Speculatively load the given folders (typically the rows on screen) so that
+     * tapping one is answered from cache. Runs behind any foreground navigation.
+     */
+    public void prefetch(List<DriveItem> folders) {
+        scheduler.clearQueue();
+        if (!scheduler.isPrefetchEnabled()) return;
+
+        int queued = 0;
+        for (DriveItem item : folders) {
+            if (queued >= MAX_PREFETCH_PER_VIEW) break;
+            if (!item.isDirectory()) continue;
+
+            FileNode node = nodeFor(item);
+            if (node.isCached() || inFlight.containsKey(node)) continue;
+            scheduler.enqueue(node);
+            queued++;
+        }
+    }
+
+    /**
+     * Turn prefetching off, e.g. while the system Data Saver is on
+     */
+    public void setPrefetchEnabled(boolean enabled) {
+        scheduler.setPrefetchEnabled(enabled);
+    }
+
+    private boolean startPrefetch(FileNode node) {
+        if (node.isCached() || inFlight.containsKey(node)) return false;
+        fetchFolder(node, FetchKind.PREFETCH);
+        return true;
+    }
+
+    private enum FetchKind {
+        NAVIGATE,    // user is waiting: spinner, errors shown
+        REFRESH,     // like NAVIGATE, but restarts a fetch already in flight
+        REVALIDATE,  // cached listing is on screen, update silently if it changed
+        PREFETCH     // speculative, scheduled behind everything else
+    }
+
+    private static class Fetch {
+        final Call<ResponseBody> call;
+        boolean prefetch;
+        // Someone is waiting on a spinner: report errors and unchanged results. A NAVIGATE
+        // joining a prefetch or revalidation sets it, so it is read when the result lands
+        boolean loud;
+        boolean streamStarted;  // first batch is on screen
+        boolean streamBroken;   // a batch was skipped, wait for the full listing
+
+        Fetch(Call<ResponseBody> call, boolean prefetch, boolean loud) {
+            this.call = call;
+            this.prefetch = prefetch;
+            this.loud = loud;
+        }
+    }
+    
+    /**
+     * Load the next page of the current folder, if there is one.
+     * Called by the UI as the list nears its end; repeated calls while a page is in flight are ignored.
+     */
+    public void loadNextPage() {
+        final FileNode node = currentNode;
+        if (!node.hasMorePages() || pageLoadingNode == node) return;
+        cancelPageLoad();
+        pageLoadingNode = node;
+        final String link = node.nextLink;
+        final int generation = node.fetchGeneration;
+
+        pageCall = cloudService.listNextPage(link);
+        pageCall.enqueue(new retrofit2.Callback<DriveItemResponse>() {
             @Override
             public void onResponse(Call<DriveItemResponse> call, Response<DriveItemResponse> response) {
+                if (!endPageLoad(call)) return;
+                // A refresh in the meantime restarted the listing, this page no longer fits
+                if (generation != node.fetchGeneration || !link.equals(node.nextLink)) return;
                 if (response.isSuccessful() && response.body() != null) {
-                    List<DriveItem> items = response.body().value;
-                    node.cache(items);
-                    // Create nodes for all items (optional, but good for pre-population if needed)
-                    // For now, we just cache the list in the node
-                    if (callback != null) callback.onSuccess(items, false);
+                    DriveItemResponse body = response.body();
+                    List<DriveItem> page = body.value != null ? body.value : new ArrayList<>();
+                    boolean replaced = node.appendPage(page, body.nextLink);
+                    nodeMap.trim(currentNode);
+                    listingsChanged();
+                    // Only the visible folder's adapter should grow
+                    if (node != currentNode || callback == null) return;
+                    // Items added locally moved to where the server lists them; show the whole listing again
+                    if (replaced) {
+                        callback.onSuccess(node.cachedItems, false);
+                    } else {
+                        callback.onPageLoaded(page);
+                    }
                 } else {
-                    if (callback != null) callback.onError("Failed to load: " + response.code());
+                    if (node == currentNode && callback != null) callback.onError(failure("Failed to load more", response.code()));
                 }
             }
 
             @Override
             public void onFailure(Call<DriveItemResponse> call, Throwable t) {
-                if (callback != null) callback.onError(t.getMessage());
+                if (!endPageLoad(call) || call.isCanceled()) return;
+                if (generation != node.fetchGeneration) return;
+                if (node == currentNode && callback != null) callback.onError(t.getMessage());
             }
         });
     }
-    
+
+    /**
+     * @return false if the call was cancelled or replaced, and its result must be ignored
+     */
+    private boolean endPageLoad(Call<DriveItemResponse> call) {
+        if (call != pageCall) return false;
+        pageCall = null;
+        pageLoadingNode = null;
+        return true;
+    }
+
+    private void cancelPageLoad() {
+        if (pageCall != null) pageCall.cancel();
+        pageCall = null;
+        pageLoadingNode = null;
+    }
+
+    // The scheduler already retried throttled calls; say so rather than show a bare code
+    private static String failure(String what, int code) {
+        if (RequestScheduler.isThrottled(code)) return what + ": OneDrive is busy, try again in a moment";
+        return what + ": " + code;
+    }
+
+    // ===== Search =====
+
+    /**
+     * Name search over every cached listing, see FileSearch
+     */
+    public FileSearch getSearch() {
+        return search;
+    }
+
+    /**
+     * Re-sync the search index once the current batch of cache changes is done.
+     * Cheap when nothing changed: listings are compared by reference.
+     */
+    private void listingsChanged() {
+        if (searchSyncPending) return;
+        searchSyncPending = true;
+        mainHandler.post(() -> {
+            searchSyncPending = false;
+            search.sync(nodeMap.values());
+        });
+    }
+
     // ===== Getters =====
     
     public FileNode getCurrentNode() {
         return currentNode;
     }
     
+    public NodeCache getNodeCache() {
+        return nodeMap;
+    }
+
+    /**
+     * Forward ComponentCallbacks2.onTrimMemory; the current path always survives
+     */
+    public void onTrimMemory(int level) {
+        nodeMap.onTrimMemory(level, currentNode);
+        listingsChanged();
+    }
+
     public void setCallback(Callback cb) {
         this.callback = cb;
     }
+
+    /**
+     * Number of children requested per page ($top)
+     */
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public boolean hasMorePages() {
+        return currentNode.hasMorePages();
+    }
     
     /**
-     * Refresh current folder
+     * Refresh current folder.
+     * With a delta cursor only the changes are downloaded and patched into the caches;
+     * without one (or when Graph expired it) the folder is refetched in full.
      */
     public void refresh() {
-        currentNode.clearCache();
-        fetchFolder(currentNode);
+        if (!deltaSync.hasToken() || !currentNode.isCached()) {
+            fullRefresh();
+            return;
+        }
+        if (deltaSync.isSyncing()) return;
+
+        deltaSync.sync(new DeltaSync.Listener() {
+            @Override
+            public void onApplied(Set<FileNode> changedNodes) {
+                // The current folder (or one above it) may have been deleted remotely
+                FileNode node = currentNode;
+                while (node.parentNode != null && nodeMap.get(node.fileItem.id) != node) {
+                    node = node.parentNode;
+                }
+                currentNode = node;
+                nodeMap.trim(currentNode);
+                // The delta covered the whole drive, every cached listing is current again
+                for (FileNode cached : nodeMap.values()) {
+                    if (cached.isCached()) cached.markValidated();
+                }
+                listingsChanged();
+
+                if (!currentNode.isCached()) {
+                    fetchFolder(currentNode);
+                } else if (callback != null) {
+                    callback.onSuccess(currentNode.cachedItems, !changedNodes.contains(currentNode));
+                }
+            }
+
+            @Override
+            public void onResyncRequired() {
+                // Every cached listing may be stale now
+                for (FileNode node : nodeMap.values()) node.clearCache();
+                listingsChanged();
+                deltaSync.acquireLatestToken(() -> fetchFolder(currentNode, FetchKind.REFRESH));
+            }
+
+            @Override
+            public void onError(String message) {
+                if (callback != null) callback.onError(message);
+            }
+        });
+    }
+
+    /**
+     * Apply the outcome of mutations made by the app (deleted ids, updated items as
+     * returned by the server) to the caches, then publish the current folder once
+     */
+    public void applyChanges(List<DriveItem> updatedItems, List<String> deletedIds) {
+        Set<FileNode> changed = deltaSync.applyLocal(updatedItems, deletedIds);
+        if (!changed.isEmpty()) listingsChanged();
+        if (changed.contains(currentNode) && callback != null) {
+            callback.onSuccess(currentNode.cachedItems, false);
+        }
+    }
+
+    // Conditional when a listing is cached, so an unchanged folder costs a 304
+    private void fullRefresh() {
+        fetchFolder(currentNode, FetchKind.REFRESH);
+    }
+
+    /**
+     * Cancel everything in flight, e.g. when the screen goes away for good
+     */
+    public void cancelAll() {
+        scheduler.clearQueue();
+        for (FileNode pending : new ArrayList<>(inFlight.keySet())) cancelFetch(pending);
+        cancelPageLoad();
+        search.cancel();
     }
     
     /**
@@ -137,10 +604,134 @@ public class NavigationManager {
     }
     
     /**
-     * Initialize (load root)
+     * Initialize (load root).
+     * If a tree was restored from disk it stays on screen and is only revalidated.
+     * Without a delta cursor one is taken first, so it covers everything listed after it.
      */
     public void init() {
-        fetchFolder(rootNode);
+        if (deltaSync.hasToken()) {
+            if (rootNode.isCached()) {
+                refresh();
+            } else {
+                fetchFolder(rootNode);
+            }
+            return;
+        }
+        if (!rootNode.isCached() && callback != null) callback.onLoading();
+        deltaSync.acquireLatestToken(() -> {
+            // A restored tree is older than the new cursor, so it can't be caught up through it
+            if (rootNode.isCached()) {
+                fullRefresh();
+            } else {
+                fetchFolder(rootNode);
+            }
+        });
+    }
+
+    // ===== Persistence =====
+
+    /**
+     * Capture the tree and its cached listings for ListingCacheStore.
+     * Returns null while nothing has been loaded, so an earlier snapshot isn't overwritten.
+     */
+    public TreeSnapshot snapshot() {
+        if (!rootNode.isCached()) return null;
+        return TreeSnapshot.capture(rootNode, nodeMap.values(), deltaSync.getDeltaLink());
+    }
+
+    /**
+     * Adopt a tree loaded from disk and show its root.
+     * Ignored once the network has delivered the root, which is always fresher.
+     */
+    public boolean restore(TreeSnapshot snapshot) {
+        return restore(snapshot, Collections.emptyList());
+    }
+
+    /**
+     * Adopt a tree loaded from disk and reopen a saved path (see getPathIds()) as far down as
+     * the tree has it, so the folder that was open comes back without a network call.
+     */
+    public boolean restore(TreeSnapshot snapshot, List<String> pathIds) {
+        if (snapshot == null || snapshot.nodes.isEmpty() || rootNode.isCached()) return false;
+
+        FileNode savedRoot = snapshot.nodes.get(0);
+        rootNode.cachedItems = savedRoot.cachedItems;
+        rootNode.nextLink = savedRoot.nextLink;
+        // So the first revalidation of the root can be a 304
+        rootNode.etag = savedRoot.etag;
+        rootNode.recomputeSize();
+        for (int i = 1; i < snapshot.nodes.size(); i++) {
+            FileNode node = snapshot.nodes.get(i);
+            if (node.parentNode == savedRoot) node.parentNode = rootNode;
+            nodeMap.put(node.fileItem.id, node);
+        }
+        learnRootId(rootNode.cachedItems);
+        deltaSync.setDeltaLink(snapshot.deltaLink);
+
+        if (currentNode == rootNode) {
+            FileNode target = rootNode;
+            for (String id : pathIds) {
+                FileNode node = nodeMap.get(id);
+                if (node == null || node.parentNode != target || !node.isCached()) break;
+                target = node;
+            }
+            if (target != rootNode) moveTo(target);
+        }
+        nodeMap.trim(currentNode);
+        listingsChanged();
+
+        if (currentNode.isCached() && callback != null) {
+            callback.onSuccess(currentNode.cachedItems, true);
+        }
+        return true;
+    }
+
+    /**
+     * Ids of the folders from the root (exclusive) down to the current one, for saved state
+     */
+    public ArrayList<String> getPathIds() {
+        ArrayList<String> ids = new ArrayList<>();
+        for (FileNode node = currentNode; node != null && node != rootNode; node = node.parentNode) {
+            ids.add(0, node.fileItem.id);
+        }
+        return ids;
+    }
+
+    /**
+     * Hand the current folder to a newly set callback, e.g. after a configuration change.
+     * Never touches the network: a folder still loading arrives whole when it is done.
+     */
+    public void redeliver() {
+        if (callback == null) return;
+        Fetch running = inFlight.get(currentNode);
+        // The new callback missed the start of the stream; batches alone would show half a folder
+        if (running != null) running.streamBroken = true;
+        if (currentNode.isCached()) {
+            callback.onSuccess(currentNode.cachedItems, true);
+        } else if (running != null) {
+            callback.onLoading();
+        }
+    }
+
+    /**
+     * Graph addresses the root by its real id in parentReference and delta results;
+     * map that id to our "root" node as well.
+     */
+    private void learnRootId(List<DriveItem> rootChildren) {
+        if (rootChildren == null || rootChildren.isEmpty()) return;
+        String rootId = rootChildren.get(0).getParentId();
+        if (rootId != null) {
+            nodeMap.put(rootId, rootNode);
+            rootGraphId = rootId;
+        }
+    }
+
+    /**
+     * Id to send to Graph for a folder; our root node is keyed "root"
+     */
+    public String getGraphId(DriveItem folder) {
+        if (folder == rootNode.fileItem && rootGraphId != null) return rootGraphId;
+        return folder.id;
     }
     
     public boolean canGoBack() {
@@ -0,0 +1,184 @@
+package com.example.onedriveexplorer.navigation;
+
+import android.content.ComponentCallbacks2;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Folder id -> FileNode index with a memory budget.
+ *
+ * Entries are kept in least-recently-used order. When the cached listings exceed
+ * the item or byte budget, the oldest folders are evicted (listing dropped, entry removed).
+ * The current folder and its ancestors are pinned so back navigation never misses.
+ */
+public class NodeCache {
+    public static final int DEFAULT_MAX_ITEMS = 50_000;
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    // Insertion ordered; touch() moves an entry to the end, so iteration runs oldest first
+    private final LinkedHashMap<String, FileNode> nodes = new LinkedHashMap<>();
+    private int maxItems;
+    private long maxBytes;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public NodeCache() {
+        this(DEFAULT_MAX_ITEMS, DEFAULT_MAX_BYTES);
+    }
+
+    public NodeCache(int maxItems, long maxBytes) {
+        this.maxItems = maxItems;
+        this.maxBytes = maxBytes;
+    }
+
+    // ===== Map access =====
+
+    /**
+     * Lookup without affecting LRU order or stats
+     */
+    public FileNode get(String id) {
+        return nodes.get(id);
+    }
+
+    public void put(String id, FileNode node) {
+        nodes.put(id, node);
+    }
+
+    public FileNode remove(String id) {
+        return nodes.remove(id);
+    }
+
+    /**
+     * Mark a folder as just used
+     */
+    public void touch(FileNode node) {
+        String id = node.fileItem.id;
+        if (nodes.get(id) == node) {
+            nodes.remove(id);
+            nodes.put(id, node);
+        }
+    }
+
+    public Collection<FileNode> values() {
+        return nodes.values();
+    }
+
+    public Set<Map.Entry<String, FileNode>> entrySet() {
+        return nodes.entrySet();
+    }
+
+    // ===== Stats =====
+
+    /**
+     * Record whether a navigation was answered from a cached listing
+     */
+    public void recordAccess(boolean hit) {
+        if (hit) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public int getCachedItemCount() {
+        int count = 0;
+        for (FileNode node : distinctNodes()) {
+            if (node.isCached()) count += node.cachedItems.size();
+        }
+        return count;
+    }
+
+    public long getEstimatedBytes() {
+        long bytes = 0;
+        for (FileNode node : distinctNodes()) bytes += node.estimatedBytes;
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "NodeCache{nodes=" + distinctNodes().size()
+                + ", items=" + getCachedItemCount()
+                + ", bytes=" + getEstimatedBytes()
+                + ", hits=" + hitCount
+                + ", misses=" + missCount
+                + ", evictions=" + evictionCount + "}";
+    }
+
+    // ===== Eviction =====
+
+    public void setLimits(int maxItems, long maxBytes) {
+        this.maxItems = maxItems;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Evict least recently used folders until the cache fits its budget
+     */
+    public void trim(FileNode current) {
+        trimTo(maxItems, maxBytes, current);
+    }
+
+    /**
+     * React to ComponentCallbacks2.onTrimMemory: the more pressure, the smaller the budget
+     */
+    public void onTrimMemory(int level, FileNode current) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            trimTo(0, 0, current);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            trimTo(maxItems / 4, maxBytes / 4, current);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            trimTo(maxItems / 2, maxBytes / 2, current);
+        }
+    }
+
+    private void trimTo(int itemBudget, long byteBudget, FileNode current) {
+        int items = getCachedItemCount();
+        long bytes = getEstimatedBytes();
+        if (items <= itemBudget && bytes <= byteBudget) return;
+
+        Set<FileNode> pinned = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (FileNode n = current; n != null; n = n.parentNode) pinned.add(n);
+
+        Iterator<Map.Entry<String, FileNode>> it = nodes.entrySet().iterator();
+        while (it.hasNext() && (items > itemBudget || bytes > byteBudget)) {
+            FileNode node = it.next().getValue();
+            if (pinned.contains(node)) continue;
+            if (node.isCached()) {
+                items -= node.cachedItems.size();
+                bytes -= node.estimatedBytes;
+            }
+            node.clearCache();
+            it.remove();
+            evictionCount++;
+        }
+    }
+
+    private Set<FileNode> distinctNodes() {
+        // The root is listed under two ids
+        Set<FileNode> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        distinct.addAll(nodes.values());
+        return distinct;
+    }
+}
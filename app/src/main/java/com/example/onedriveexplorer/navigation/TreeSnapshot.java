@@ -0,0 +1,205 @@
+package com.example.onedriveexplorer.navigation;
+
+import com.example.onedriveexplorer.models.DriveItem;
+import com.example.onedriveexplorer.models.GraphDateTime;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Point-in-time copy of the navigation tree and its cached listings,
+ * in a compact versioned binary format.
+ *
+ * Layout: magic, version, deltaLink, node count, then every node
+ * (parent index, folder item, nextLink, listing ETag, cached items) with parents before children.
+ * Download URLs are not stored, they expire within the hour anyway. cTags are, since
+ * ThumbnailLoader keys its disk cache by them.
+ */
+public class TreeSnapshot {
+    private static final int MAGIC = 0x4F444C43;  // "ODLC"
+    private static final int VERSION = 4;
+
+    private static final int FLAG_FOLDER = 1;
+    private static final int FLAG_FILE = 1 << 1;
+    private static final int FLAG_PARENT_REF = 1 << 2;
+    private static final int FLAG_ETAG = 1 << 3;
+    private static final int FLAG_CTAG = 1 << 4;
+
+    // Parents always precede their children; index 0 is the root
+    final List<FileNode> nodes;
+    final String deltaLink;
+
+    TreeSnapshot(List<FileNode> nodes, String deltaLink) {
+        this.nodes = nodes;
+        this.deltaLink = deltaLink;
+    }
+
+    public int getNodeCount() {
+        return nodes.size();
+    }
+
+    /**
+     * Copy the tree so it can be written off the main thread while navigation keeps mutating it.
+     * Listings themselves are shared: a CompactListing is never edited, only replaced.
+     * Nodes that are no longer connected to the root are left out.
+     */
+    static TreeSnapshot capture(FileNode root, Collection<FileNode> allNodes, String deltaLink) {
+        // nodeMap may list the root under two ids, so dedupe by identity
+        Set<FileNode> present = Collections.newSetFromMap(new IdentityHashMap<>());
+        present.addAll(allNodes);
+
+        // Keep nodes whose whole ancestor chain is still present (evicted folders break the chain)
+        Map<FileNode, Integer> depthOf = new IdentityHashMap<>();
+        for (FileNode node : present) {
+            int depth = 0;
+            FileNode n = node;
+            while (n != root && n != null && present.contains(n)) {
+                n = n.parentNode;
+                depth++;
+            }
+            if (n == root) depthOf.put(node, depth);
+        }
+
+        List<FileNode> ordered = new ArrayList<>(depthOf.keySet());
+        Collections.sort(ordered, (a, b) -> Integer.compare(depthOf.get(a), depthOf.get(b)));
+
+        Map<FileNode, FileNode> copies = new IdentityHashMap<>();
+        List<FileNode> nodes = new ArrayList<>(ordered.size());
+        for (FileNode node : ordered) {
+            FileNode copy = new FileNode(node.fileItem, copies.get(node.parentNode));
+            copy.nextLink = node.nextLink;
+            copy.etag = node.etag;
+            copy.cachedItems = node.cachedItems;
+            copy.estimatedBytes = node.estimatedBytes;
+            copies.put(node, copy);
+            nodes.add(copy);
+        }
+        return new TreeSnapshot(nodes, deltaLink);
+    }
+
+    // ===== Serialization =====
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, deltaLink);
+        out.writeInt(nodes.size());
+
+        Map<FileNode, Integer> indexOf = new IdentityHashMap<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            FileNode node = nodes.get(i);
+            indexOf.put(node, i);
+            Integer parentIndex = node.parentNode != null ? indexOf.get(node.parentNode) : null;
+            out.writeInt(parentIndex != null ? parentIndex : -1);
+            writeItem(out, node.fileItem);
+            writeString(out, node.nextLink);
+            writeString(out, node.etag);
+
+            if (node.cachedItems == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(node.cachedItems.size());
+                for (DriveItem item : node.cachedItems) writeItem(out, item);
+            }
+        }
+    }
+
+    /**
+     * @return the snapshot, or null if the data was written by an incompatible version
+     * @throws IOException if the data is truncated or corrupt
+     */
+    public static TreeSnapshot readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+        String deltaLink = readString(in);
+        int count = in.readInt();
+        if (count < 0) throw new IOException("Corrupt snapshot: " + count + " nodes");
+
+        // Counts are not trusted for allocation; a truncated file ends in EOFException instead
+        List<FileNode> nodes = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            int parentIndex = in.readInt();
+            // Only the root has no parent, and parents precede their children
+            if (i == 0 ? parentIndex != -1 : parentIndex < 0 || parentIndex >= i) {
+                throw new IOException("Corrupt snapshot: node " + i + " has parent " + parentIndex);
+            }
+            FileNode parent = parentIndex >= 0 ? nodes.get(parentIndex) : null;
+            FileNode node = new FileNode(readItem(in), parent);
+            node.nextLink = readString(in);
+            node.etag = readString(in);
+
+            int size = in.readInt();
+            if (size < -1) throw new IOException("Corrupt snapshot: listing of " + size);
+            if (size >= 0) {
+                List<DriveItem> items = new ArrayList<>(Math.min(size, CompactListing.CHUNK_SIZE));
+                for (int j = 0; j < size; j++) items.add(readItem(in));
+                node.cachedItems = CompactListing.of(items);
+                node.recomputeSize();
+            }
+            nodes.add(node);
+        }
+        return new TreeSnapshot(nodes, deltaLink);
+    }
+
+    private static void writeItem(DataOutputStream out, DriveItem item) throws IOException {
+        int flags = 0;
+        if (item.folder != null) flags |= FLAG_FOLDER;
+        if (item.file != null) flags |= FLAG_FILE;
+        if (item.parentReference != null) flags |= FLAG_PARENT_REF;
+        if (item.eTag != null) flags |= FLAG_ETAG;
+        if (item.cTag != null) flags |= FLAG_CTAG;
+        out.writeByte(flags);
+        writeString(out, item.id);
+        writeString(out, item.name);
+        out.writeLong(item.size);
+        out.writeLong(GraphDateTime.parse(item.lastModifiedDateTime));
+        if (item.folder != null) out.writeInt(item.folder.childCount);
+        if (item.file != null) writeString(out, item.file.mimeType);
+        if (item.parentReference != null) {
+            writeString(out, item.parentReference.id);
+            writeString(out, item.parentReference.driveId);
+        }
+        if (item.eTag != null) writeString(out, item.eTag);
+        if (item.cTag != null) writeString(out, item.cTag);
+    }
+
+    private static DriveItem readItem(DataInputStream in) throws IOException {
+        int flags = in.readByte();
+        DriveItem item = new DriveItem();
+        item.id = readString(in);
+        item.name = readString(in);
+        item.size = in.readLong();
+        item.lastModifiedDateTime = GraphDateTime.format(in.readLong());
+        if ((flags & FLAG_FOLDER) != 0) {
+            item.folder = new DriveItem.Folder();
+            item.folder.childCount = in.readInt();
+        }
+        if ((flags & FLAG_FILE) != 0) {
+            item.file = new DriveItem.File();
+            item.file.mimeType = readString(in);
+        }
+        if ((flags & FLAG_PARENT_REF) != 0) {
+            item.parentReference = new DriveItem.ItemReference();
+            item.parentReference.id = readString(in);
+            item.parentReference.driveId = readString(in);
+        }
+        if ((flags & FLAG_ETAG) != 0) item.eTag = readString(in);
+        if ((flags & FLAG_CTAG) != 0) item.cTag = readString(in);
+        return item;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
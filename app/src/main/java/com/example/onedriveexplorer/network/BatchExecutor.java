@@ -0,0 +1,219 @@
+package com.example.onedriveexplorer.network;
+
+import android.os.Handler;
+import android.os.Looper;
+import com.example.onedriveexplorer.models.BatchRequest;
+import com.example.onedriveexplorer.models.BatchResponse;
+import com.example.onedriveexplorer.models.DriveItem;
+import com.google.gson.Gson;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Runs many item operations through the Graph JSON $batch endpoint.
+ *
+ * Operations are packed 20 per request and several requests run in parallel.
+ * Each operation gets its own Result; throttled or failed ones are retried
+ * on their own in a later round instead of resubmitting whole batches.
+ * The callback fires once, on the main thread, when every operation has settled.
+ */
+public class BatchExecutor {
+    public static final int MAX_BATCH_SIZE = 20;
+    public static final int MAX_PARALLEL_BATCHES = 4;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BASE_RETRY_DELAY_MS = 1000;
+
+    private final OneDriveService service;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Gson gson = OneDriveClient.getGson();
+
+    public interface Callback {
+        void onComplete(List<Result> results);
+    }
+
+    public BatchExecutor(OneDriveService service) {
+        this.service = service;
+    }
+
+    public static class Operation {
+        public final String itemId;
+        final String method;
+        final DriveItem body;
+
+        private Operation(String itemId, String method, DriveItem body) {
+            this.itemId = itemId;
+            this.method = method;
+            this.body = body;
+        }
+
+        public static Operation delete(String itemId) {
+            return new Operation(itemId, "DELETE", null);
+        }
+
+        public static Operation move(String itemId, String targetFolderId) {
+            DriveItem update = new DriveItem();
+            update.parentReference = new DriveItem.ItemReference();
+            update.parentReference.id = targetFolderId;
+            return new Operation(itemId, "PATCH", update);
+        }
+
+        public boolean isDelete() {
+            return "DELETE".equals(method);
+        }
+    }
+
+    public static class Result {
+        public final Operation operation;
+        public final int status;        // HTTP status of the operation, 0 if the request never got an answer
+        public final DriveItem item;    // updated item for PATCH operations, null otherwise
+
+        Result(Operation operation, int status, DriveItem item) {
+            this.operation = operation;
+            this.status = status;
+            this.item = item;
+        }
+
+        public boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    public void execute(List<Operation> operations, Callback callback) {
+        if (operations.isEmpty()) {
+            callback.onComplete(Collections.emptyList());
+            return;
+        }
+        new Run(operations, callback).startRound(new ArrayList<>(operations));
+    }
+
+    /**
+     * State of one execute() call
+     */
+    private class Run {
+        private final List<Operation> operations;
+        private final Callback callback;
+        private final Map<Operation, Result> results = new HashMap<>();
+        private final Map<Operation, Integer> attempts = new HashMap<>();
+        private final ArrayDeque<List<Operation>> pendingBatches = new ArrayDeque<>();
+        private final List<Operation> retries = new ArrayList<>();
+        private int runningBatches;
+        private long retryDelayMs;
+
+        Run(List<Operation> operations, Callback callback) {
+            this.operations = operations;
+            this.callback = callback;
+        }
+
+        void startRound(List<Operation> ops) {
+            retries.clear();
+            retryDelayMs = 0;
+            for (int i = 0; i < ops.size(); i += MAX_BATCH_SIZE) {
+                pendingBatches.add(ops.subList(i, Math.min(i + MAX_BATCH_SIZE, ops.size())));
+            }
+            pump();
+        }
+
+        private void pump() {
+            while (runningBatches < MAX_PARALLEL_BATCHES && !pendingBatches.isEmpty()) {
+                send(pendingBatches.poll());
+            }
+            if (runningBatches == 0 && pendingBatches.isEmpty()) finishRound();
+        }
+
+        private void send(List<Operation> batch) {
+            runningBatches++;
+            BatchRequest request = new BatchRequest();
+            for (int i = 0; i < batch.size(); i++) {
+                Operation op = batch.get(i);
+                attempts.put(op, attempts.containsKey(op) ? attempts.get(op) + 1 : 1);
+
+                BatchRequest.Request r = new BatchRequest.Request();
+                r.id = String.valueOf(i);
+                r.method = op.method;
+                r.url = "/me/drive/items/" + op.itemId;
+                if (op.body != null) {
+                    r.body = op.body;
+                    r.headers = Collections.singletonMap("Content-Type", "application/json");
+                }
+                request.requests.add(r);
+            }
+
+            service.batch(request).enqueue(new retrofit2.Callback<BatchResponse>() {
+                @Override
+                public void onResponse(Call<BatchResponse> call, Response<BatchResponse> response) {
+                    runningBatches--;
+                    if (response.isSuccessful() && response.body() != null && response.body().responses != null) {
+                        Map<String, BatchResponse.Response> byId = new HashMap<>();
+                        for (BatchResponse.Response r : response.body().responses) byId.put(r.id, r);
+                        for (int i = 0; i < batch.size(); i++) {
+                            settle(batch.get(i), byId.get(String.valueOf(i)));
+                        }
+                    } else {
+                        // The whole envelope failed; every operation in it gets another try
+                        for (Operation op : batch) settle(op, response.code(), null, retryAfterMs(response.headers().get("Retry-After")));
+                    }
+                    pump();
+                }
+
+                @Override
+                public void onFailure(Call<BatchResponse> call, Throwable t) {
+                    runningBatches--;
+                    for (Operation op : batch) settle(op, 0, null, 0);
+                    pump();
+                }
+            });
+        }
+
+        private void settle(Operation op, BatchResponse.Response r) {
+            if (r == null) {
+                settle(op, 0, null, 0);
+                return;
+            }
+            DriveItem item = null;
+            if (r.body != null && r.body.isJsonObject() && !op.isDelete()) {
+                item = gson.fromJson(r.body, DriveItem.class);
+            }
+            String retryAfter = r.headers != null ? r.headers.get("Retry-After") : null;
+            settle(op, r.status, item, retryAfterMs(retryAfter));
+        }
+
+        private void settle(Operation op, int status, DriveItem item, long retryAfterMs) {
+            boolean retryable = status == 0 || status == 429 || status >= 500;
+            if (retryable && attempts.get(op) < MAX_ATTEMPTS) {
+                retries.add(op);
+                retryDelayMs = Math.max(retryDelayMs, retryAfterMs);
+            } else {
+                results.put(op, new Result(op, status, item));
+            }
+        }
+
+        private void finishRound() {
+            if (!retries.isEmpty()) {
+                List<Operation> next = new ArrayList<>(retries);
+                int attempt = attempts.get(next.get(0));
+                long backoff = BASE_RETRY_DELAY_MS << (attempt - 1);
+                mainHandler.postDelayed(() -> startRound(next), Math.max(backoff, retryDelayMs));
+                return;
+            }
+            // Report in the caller's order
+            List<Result> ordered = new ArrayList<>(operations.size());
+            for (Operation op : operations) ordered.add(results.get(op));
+            callback.onComplete(ordered);
+        }
+    }
+
+    private static long retryAfterMs(String retryAfter) {
+        if (retryAfter == null) return 0;
+        try {
+            return Long.parseLong(retryAfter.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.onedriveexplorer.network;
+
+import com.example.onedriveexplorer.metrics.PerfMonitor;
+import com.example.onedriveexplorer.models.DriveItemResponse;
+import com.google.gson.Gson;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * Parses DriveItemResponse bodies with DriveItemStreamParser; every other type
+ * falls through to the next factory (Gson). Registered before GsonConverterFactory.
+ */
+public class DriveItemResponseConverterFactory extends Converter.Factory {
+    private final DriveItemStreamParser parser;
+
+    private DriveItemResponseConverterFactory(Gson gson) {
+        this.parser = new DriveItemStreamParser(gson);
+    }
+
+    public static DriveItemResponseConverterFactory create(Gson gson) {
+        return new DriveItemResponseConverterFactory(gson);
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        if (type != DriveItemResponse.class) return null;
+        return body -> {
+            PerfMonitor.ParseTimer timer = PerfMonitor.startParse();
+            try {
+                DriveItemResponse parsed = parser.parse(body.charStream(), 0, null);
+                timer.finish(parsed.value.size());
+                return parsed;
+            } finally {
+                body.close();
+            }
+        };
+    }
+}
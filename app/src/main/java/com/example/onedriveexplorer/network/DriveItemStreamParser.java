@@ -0,0 +1,102 @@
+package com.example.onedriveexplorer.network;
+
+import com.example.onedriveexplorer.models.DriveItem;
+import com.example.onedriveexplorer.models.DriveItemResponse;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a Graph collection response ({"value": [...], "@odata.nextLink": ...}) with a JsonReader,
+ * one DriveItem at a time, straight off the network stream.
+ * Items can be handed out in batches while the rest of the response is still arriving; then
+ * they are not also collected, so only the batch being filled is held here.
+ */
+public class DriveItemStreamParser {
+    public static final int DEFAULT_BATCH_SIZE = 50;
+
+    private final TypeAdapter<DriveItem> itemAdapter;
+
+    public interface BatchListener {
+        // Called on the parsing thread; the list is not touched again by the parser
+        void onBatch(List<DriveItem> batch);
+    }
+
+    public DriveItemStreamParser(Gson gson) {
+        this(gson.getAdapter(DriveItem.class));
+    }
+
+    DriveItemStreamParser(TypeAdapter<DriveItem> itemAdapter) {
+        this.itemAdapter = itemAdapter;
+    }
+
+    /**
+     * Parse the whole response. With a listener, every batchSize items (and the remainder at
+     * the end) are passed to it as soon as they have been read, and value is left null.
+     */
+    public DriveItemResponse parse(Reader in, int batchSize, BatchListener listener) throws IOException {
+        return read(new JsonReader(in), batchSize, listener);
+    }
+
+    DriveItemResponse read(JsonReader reader, int batchSize, BatchListener listener) throws IOException {
+        try {
+            return readResponse(reader, batchSize, listener);
+        } catch (IllegalStateException | NumberFormatException e) {
+            // e.g. "value" that isn't an array
+            throw GraphTypeAdapters.syntaxError(e);
+        }
+    }
+
+    private DriveItemResponse readResponse(JsonReader reader, int batchSize, BatchListener listener) throws IOException {
+        DriveItemResponse response = new DriveItemResponse();
+        response.value = listener == null ? new ArrayList<>() : null;
+        List<DriveItem> batch = listener != null ? new ArrayList<>(batchSize) : null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "value":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        DriveItem item = itemAdapter.read(reader);
+                        if (batch == null) {
+                            response.value.add(item);
+                            continue;
+                        }
+                        batch.add(item);
+                        if (batch.size() >= batchSize) {
+                            listener.onBatch(batch);
+                            batch = new ArrayList<>(batchSize);
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                case "@odata.nextLink":
+                    response.nextLink = nextStringOrNull(reader);
+                    break;
+                case "@odata.deltaLink":
+                    response.deltaLink = nextStringOrNull(reader);
+                    break;
+                default:
+                    // @odata.context, @odata.count and anything else we don't use
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (batch != null && !batch.isEmpty()) listener.onBatch(batch);
+        return response;
+    }
+
+    private static String nextStringOrNull(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+}
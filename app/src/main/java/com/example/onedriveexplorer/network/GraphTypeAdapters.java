@@ -0,0 +1,331 @@
+package com.example.onedriveexplorer.network;
+
+import com.example.onedriveexplorer.models.DriveItem;
+import com.example.onedriveexplorer.models.DriveItemResponse;
+import com.example.onedriveexplorer.models.TokenResponse;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hand-written Gson adapters for the models we parse in bulk.
+ *
+ * Gson's reflective adapters build their field maps through reflection on first use, which
+ * is what makes the first listing after a cold start slow. These read fields with a plain
+ * switch, skip unknown ones with skipValue(), and intern strings that repeat across a
+ * listing (MIME types, parent ids). Field names match the models' @SerializedName values.
+ * A value of the wrong type fails with JsonSyntaxException, as it does with Gson's own adapters.
+ */
+public final class GraphTypeAdapters {
+    // Interned values are few and small; the cap only guards against unbounded growth
+    private static final int MAX_INTERNED = 4096;
+    private static final ConcurrentHashMap<String, String> interned = new ConcurrentHashMap<>();
+
+    public static final TypeAdapterFactory FACTORY = new TypeAdapterFactory() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            Class<? super T> raw = type.getRawType();
+            if (raw == DriveItem.class) return (TypeAdapter<T>) new DriveItemAdapter();
+            if (raw == DriveItemResponse.class) return (TypeAdapter<T>) new DriveItemResponseAdapter(new DriveItemAdapter());
+            if (raw == TokenResponse.class) return (TypeAdapter<T>) new TokenResponseAdapter();
+            return null;
+        }
+    };
+
+    private GraphTypeAdapters() {
+    }
+
+    static String intern(String value) {
+        if (value == null) return null;
+        String existing = interned.get(value);
+        if (existing != null) return existing;
+        if (interned.size() >= MAX_INTERNED) interned.clear();
+        existing = interned.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    private static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    /**
+     * What JsonReader throws for a value of the wrong type (IllegalStateException) or a bad
+     * number (NumberFormatException), as the JsonParseException callers expect
+     */
+    static JsonSyntaxException syntaxError(RuntimeException e) {
+        return new JsonSyntaxException(e);
+    }
+
+    // true if the value was null (and consumed)
+    private static boolean skipNull(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.NULL) return false;
+        in.nextNull();
+        return true;
+    }
+
+    // ===== DriveItem =====
+
+    static final class DriveItemAdapter extends TypeAdapter<DriveItem> {
+        @Override
+        public DriveItem read(JsonReader in) throws IOException {
+            try {
+                return readItem(in);
+            } catch (IllegalStateException | NumberFormatException e) {
+                throw syntaxError(e);
+            }
+        }
+
+        private static DriveItem readItem(JsonReader in) throws IOException {
+            if (skipNull(in)) return null;
+            DriveItem item = new DriveItem();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        item.id = nextString(in);
+                        break;
+                    case "name":
+                        item.name = nextString(in);
+                        break;
+                    case "size":
+                        if (!skipNull(in)) item.size = in.nextLong();
+                        break;
+                    case "folder":
+                        item.folder = readFolder(in);
+                        break;
+                    case "file":
+                        item.file = readFile(in);
+                        break;
+                    case "eTag":
+                        item.eTag = nextString(in);
+                        break;
+                    case "cTag":
+                        item.cTag = nextString(in);
+                        break;
+                    case "lastModifiedDateTime":
+                        item.lastModifiedDateTime = nextString(in);
+                        break;
+                    case "@microsoft.graph.downloadUrl":
+                        item.downloadUrl = nextString(in);
+                        break;
+                    case "parentReference":
+                        item.parentReference = readItemReference(in);
+                        break;
+                    case "deleted":
+                        item.deleted = readDeleted(in);
+                        break;
+                    case "root":
+                        if (skipNull(in)) break;
+                        in.skipValue();
+                        item.root = new DriveItem.Root();
+                        break;
+                    default:
+                        // createdBy, createdDateTime, fileSystemInfo, ... are not used
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return item;
+        }
+
+        private static DriveItem.Folder readFolder(JsonReader in) throws IOException {
+            if (skipNull(in)) return null;
+            DriveItem.Folder folder = new DriveItem.Folder();
+            in.beginObject();
+            while (in.hasNext()) {
+                if ("childCount".equals(in.nextName()) && !skipNull(in)) {
+                    folder.childCount = in.nextInt();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return folder;
+        }
+
+        private static DriveItem.File readFile(JsonReader in) throws IOException {
+            if (skipNull(in)) return null;
+            DriveItem.File file = new DriveItem.File();
+            in.beginObject();
+            while (in.hasNext()) {
+                if ("mimeType".equals(in.nextName())) {
+                    file.mimeType = intern(nextString(in));
+                } else {
+                    in.skipValue();  // hashes
+                }
+            }
+            in.endObject();
+            return file;
+        }
+
+        private static DriveItem.ItemReference readItemReference(JsonReader in) throws IOException {
+            if (skipNull(in)) return null;
+            DriveItem.ItemReference ref = new DriveItem.ItemReference();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        // Every child of a folder carries the same parent id
+                        ref.id = intern(nextString(in));
+                        break;
+                    case "driveId":
+                        ref.driveId = intern(nextString(in));
+                        break;
+                    default:
+                        in.skipValue();  // driveType, path
+                }
+            }
+            in.endObject();
+            return ref;
+        }
+
+        private static DriveItem.Deleted readDeleted(JsonReader in) throws IOException {
+            if (skipNull(in)) return null;
+            DriveItem.Deleted deleted = new DriveItem.Deleted();
+            in.beginObject();
+            while (in.hasNext()) {
+                if ("state".equals(in.nextName())) {
+                    deleted.state = intern(nextString(in));
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return deleted;
+        }
+
+        // Same output as Gson's reflective adapter: declaration order, nulls dropped by the writer.
+        // A zero size is left out too: reading defaults it to 0, and PATCH/POST bodies built from
+        // a new DriveItem must not send the read-only property
+        @Override
+        public void write(JsonWriter out, DriveItem item) throws IOException {
+            if (item == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("id").value(item.id);
+            out.name("name").value(item.name);
+            if (item.size != 0) out.name("size").value(item.size);
+            if (item.folder != null) {
+                out.name("folder").beginObject().name("childCount").value(item.folder.childCount).endObject();
+            }
+            if (item.file != null) {
+                out.name("file").beginObject().name("mimeType").value(item.file.mimeType).endObject();
+            }
+            out.name("eTag").value(item.eTag);
+            out.name("cTag").value(item.cTag);
+            out.name("lastModifiedDateTime").value(item.lastModifiedDateTime);
+            out.name("@microsoft.graph.downloadUrl").value(item.downloadUrl);
+            if (item.parentReference != null) {
+                out.name("parentReference").beginObject()
+                        .name("id").value(item.parentReference.id)
+                        .name("driveId").value(item.parentReference.driveId)
+                        .endObject();
+            }
+            if (item.deleted != null) {
+                out.name("deleted").beginObject().name("state").value(item.deleted.state).endObject();
+            }
+            if (item.root != null) {
+                out.name("root").beginObject().endObject();
+            }
+            out.endObject();
+        }
+    }
+
+    // ===== DriveItemResponse =====
+
+    static final class DriveItemResponseAdapter extends TypeAdapter<DriveItemResponse> {
+        private final DriveItemStreamParser parser;
+        private final DriveItemAdapter itemAdapter;
+
+        DriveItemResponseAdapter(DriveItemAdapter itemAdapter) {
+            this.itemAdapter = itemAdapter;
+            this.parser = new DriveItemStreamParser(itemAdapter);
+        }
+
+        @Override
+        public DriveItemResponse read(JsonReader in) throws IOException {
+            if (skipNull(in)) return null;
+            return parser.read(in, 0, null);
+        }
+
+        @Override
+        public void write(JsonWriter out, DriveItemResponse response) throws IOException {
+            if (response == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            if (response.value != null) {
+                out.name("value").beginArray();
+                for (DriveItem item : response.value) itemAdapter.write(out, item);
+                out.endArray();
+            }
+            out.name("@odata.nextLink").value(response.nextLink);
+            out.name("@odata.deltaLink").value(response.deltaLink);
+            out.endObject();
+        }
+    }
+
+    // ===== TokenResponse =====
+
+    static final class TokenResponseAdapter extends TypeAdapter<TokenResponse> {
+        @Override
+        public TokenResponse read(JsonReader in) throws IOException {
+            try {
+                return readToken(in);
+            } catch (IllegalStateException | NumberFormatException e) {
+                throw syntaxError(e);
+            }
+        }
+
+        private static TokenResponse readToken(JsonReader in) throws IOException {
+            if (skipNull(in)) return null;
+            TokenResponse token = new TokenResponse();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "access_token":
+                        token.accessToken = nextString(in);
+                        break;
+                    case "token_type":
+                        token.tokenType = intern(nextString(in));
+                        break;
+                    case "expires_in":
+                        if (!skipNull(in)) token.expiresIn = in.nextInt();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return token;
+        }
+
+        @Override
+        public void write(JsonWriter out, TokenResponse token) throws IOException {
+            if (token == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("access_token").value(token.accessToken);
+            out.name("token_type").value(token.tokenType);
+            out.name("expires_in").value(token.expiresIn);
+            out.endObject();
+        }
+    }
+}
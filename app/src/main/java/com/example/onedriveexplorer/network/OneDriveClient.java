@@ -1,37 +1,194 @@
 package com.example.onedriveexplorer.network;
 
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import com.example.onedriveexplorer.R;
+import com.example.onedriveexplorer.metrics.NetworkEventListener;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
+import okhttp3.Response;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
+/**
+ * The process-wide networking core.
+ *
+ * Every client is derived from one base OkHttpClient, so they share a connection pool, a
+ * dispatcher and (for API calls) an on-disk HTTP cache; an HTTP/2 connection to Graph opened
+ * by one of them is reused by all. OkHttp negotiates gzip on its own. init() also opens that
+ * connection early, while the token is still being fetched.
+ *
+ * Graph calls wait their turn in a RequestScheduler lane, which also retries them while
+ * Graph throttles.
+ *
+ * The Graph and token server roots come from the graph_base_url and token_base_url string
+ * resources, or are passed in directly, e.g. to run against a local fake server.
+ */
 public class OneDriveClient {
-    private static final String BASE_URL = "https://graph.microsoft.com/";
-    private static Retrofit retrofit = null;
-    private static String accessToken = "";
+    private static final String TAG = "OneDriveClient";
+    private static final String AUTH_PREFS = "auth";
+    private static final String HTTP_CACHE_DIR = "http";
+    private static final long HTTP_CACHE_BYTES = 20L * 1024 * 1024;
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    // Graph calls are multiplexed over one HTTP/2 connection, so OkHttp's default of 5 is too low.
+    // RequestScheduler's lane caps add up to this, so a full lane never holds up another
+    private static final int MAX_REQUESTS_PER_HOST = 16;
+    private static final int MAX_REQUESTS = 64;
 
-    public static void setAccessToken(String token) {
-        accessToken = token;
+    private static OkHttpClient baseClient = null;
+    private static OkHttpClient apiClient = null;
+    private static OkHttpClient contentClient = null;
+    // One service per lane, all sharing apiClient and the scheduler
+    private static final Map<RequestScheduler.Lane, OneDriveService> services = new EnumMap<>(RequestScheduler.Lane.class);
+    private static final RequestScheduler scheduler = new RequestScheduler();
+    private static String graphBaseUrl = null;
+    private static TokenManager tokenManager = null;
+    // Hand-written adapters for the bulk models, reflection for the rest
+    private static final Gson gson = new GsonBuilder()
+            .registerTypeAdapterFactory(GraphTypeAdapters.FACTORY)
+            .create();
+
+    /**
+     * Must be called before the first getService(). The token manager lives as long as the
+     * process, so a recreated Activity keeps the cached token and any refresh in progress.
+     */
+    public static void init(Context context) {
+        init(context, context.getString(R.string.graph_base_url), context.getString(R.string.token_base_url));
     }
 
-    public static OneDriveService getService() {
-        if (retrofit == null) {
-            OkHttpClient client = new OkHttpClient.Builder()
+    /**
+     * init() against other servers. Only the first call in a process takes effect.
+     */
+    public static synchronized void init(Context context, String graphBaseUrl, String tokenBaseUrl) {
+        if (baseClient != null) return;
+        Context app = context.getApplicationContext();
+        OneDriveClient.graphBaseUrl = graphBaseUrl;
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+        baseClient = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                // Phase timings for PerfMonitor; a no-op unless it is enabled
+                .eventListenerFactory(NetworkEventListener.FACTORY)
+                .build();
+
+        Retrofit tokenRetrofit = new Retrofit.Builder()
+                .baseUrl(tokenBaseUrl)
+                .client(baseClient)
+                .addConverterFactory(GsonConverterFactory.create(gson))
+                .build();
+        // Tokens of another server are kept apart, so switching back doesn't send them to Graph
+        String prefsName = graphBaseUrl.equals(app.getString(R.string.graph_base_url))
+                ? AUTH_PREFS
+                : AUTH_PREFS + "-" + HttpUrl.get(graphBaseUrl).host() + "-" + HttpUrl.get(graphBaseUrl).port();
+        SharedPreferences prefs = app.getSharedPreferences(prefsName, Context.MODE_PRIVATE);
+        tokenManager = new TokenManager(prefs, tokenRetrofit.create(TokenService.class));
+
+        apiClient = baseClient.newBuilder()
+                .cache(new Cache(new File(app.getCacheDir(), HTTP_CACHE_DIR), HTTP_CACHE_BYTES))
                 .addInterceptor(chain -> {
                     Request original = chain.request();
+                    String token = tokenManager.getAccessToken();
+                    if (token == null) return chain.proceed(original);  // the 401 goes to the authenticator
                     Request.Builder builder = original.newBuilder()
-                            .header("Authorization", "Bearer " + accessToken)
+                            .header("Authorization", "Bearer " + token)
                             .method(original.method(), original.body());
                     return chain.proceed(builder.build());
                 })
+                // A 401 refreshes the token once, shared by every request that hit it, and replays
+                .authenticator(tokenManager)
                 .build();
 
-            retrofit = new Retrofit.Builder()
-                    .baseUrl(BASE_URL)
-                    .client(client)
-                    .addConverterFactory(GsonConverterFactory.create())
+        prewarm();
+    }
+
+    /**
+     * The Gson instance behind both Retrofit converters, for code that parses Graph JSON itself
+     */
+    public static Gson getGson() {
+        return gson;
+    }
+
+    public static TokenManager getTokenManager() {
+        return tokenManager;
+    }
+
+    /**
+     * The Graph API for interactive calls (mutations go to their own lane); created once,
+     * Retrofit service proxies are thread-safe
+     */
+    public static OneDriveService getService() {
+        return getService(RequestScheduler.Lane.INTERACTIVE);
+    }
+
+    /**
+     * The Graph API with its calls scheduled in the given lane, see RequestScheduler
+     */
+    public static synchronized OneDriveService getService(RequestScheduler.Lane lane) {
+        OneDriveService service = services.get(lane);
+        if (service == null) {
+            Retrofit retrofit = new Retrofit.Builder()
+                    .baseUrl(graphBaseUrl)
+                    .client(apiClient)
+                    .addCallAdapterFactory(scheduler.callAdapterFactory(lane))
+                    .addConverterFactory(DriveItemResponseConverterFactory.create(gson))
+                    .addConverterFactory(GsonConverterFactory.create(gson))
                     .build();
+            service = retrofit.create(OneDriveService.class);
+            services.put(lane, service);
+        }
+        return service;
+    }
+
+    public static RequestScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Client for pre-authenticated content URLs (@microsoft.graph.downloadUrl),
+     * which must be fetched without the bearer token. No HTTP cache: ranges of
+     * large files would only push listings out of it.
+     */
+    public static synchronized OkHttpClient getContentClient() {
+        if (contentClient == null) {
+            contentClient = baseClient.newBuilder().build();
         }
-        return retrofit.create(OneDriveService.class);
+        return contentClient;
+    }
+
+    /**
+     * Open the DNS + TCP + TLS + HTTP/2 connection to Graph ahead of the first real call.
+     * The request is unauthenticated and its answer is ignored; only the pooled connection matters.
+     */
+    private static void prewarm() {
+        Request request = new Request.Builder().url(graphBaseUrl + "v1.0/").head().build();
+        baseClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                Log.d(TAG, "Pre-warm failed: " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+            }
+        });
     }
 }
@@ -1,16 +1,26 @@
 package com.example.onedriveexplorer.network;
 
+import com.example.onedriveexplorer.models.BatchRequest;
+import com.example.onedriveexplorer.models.BatchResponse;
 import com.example.onedriveexplorer.models.DriveItem;
 import com.example.onedriveexplorer.models.DriveItemResponse;
+import com.example.onedriveexplorer.models.UploadSession;
+import com.example.onedriveexplorer.models.UploadSessionRequest;
 
+import okhttp3.RequestBody;
 import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.Body;
 import retrofit2.http.DELETE;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
 import retrofit2.http.POST;
 import retrofit2.http.PATCH;
+import retrofit2.http.PUT;
 import retrofit2.http.Path;
+import retrofit2.http.Query;
+import retrofit2.http.Streaming;
+import retrofit2.http.Url;
 
 public interface OneDriveService {
     @GET("/v1.0/me/drive/items/{itemId}/children")
@@ -19,6 +29,74 @@ public interface OneDriveService {
     @GET("/v1.0/me/drive/root/children")
     Call<DriveItemResponse> listRootChildren();
 
+    // Paged variants: Graph returns at most $top items plus an @odata.nextLink cursor.
+    // ifNoneMatch is the ETag of the cached listing (null to skip); 304 means it is still current
+    @GET("/v1.0/me/drive/items/{itemId}/children")
+    Call<DriveItemResponse> listChildren(@Path("itemId") String itemId, @Query("$top") int top,
+                                         @Header("If-None-Match") String ifNoneMatch);
+
+    @GET("/v1.0/me/drive/root/children")
+    Call<DriveItemResponse> listRootChildren(@Query("$top") int top,
+                                             @Header("If-None-Match") String ifNoneMatch);
+
+    // Same listings, unparsed: NavigationManager streams the body through DriveItemStreamParser
+    // so the first items reach the screen before the whole page has arrived
+    @Streaming
+    @GET("/v1.0/me/drive/items/{itemId}/children")
+    Call<ResponseBody> streamChildren(@Path("itemId") String itemId, @Query("$top") int top,
+                                      @Header("If-None-Match") String ifNoneMatch);
+
+    @Streaming
+    @GET("/v1.0/me/drive/root/children")
+    Call<ResponseBody> streamRootChildren(@Query("$top") int top,
+                                          @Header("If-None-Match") String ifNoneMatch);
+
+    // Follows an @odata.nextLink as-is (it already carries $top and $skiptoken)
+    @GET
+    Call<DriveItemResponse> listNextPage(@Url String nextLink);
+
+    // Changes across the drive since a delta token; token=latest returns only a fresh deltaLink
+    @GET("/v1.0/me/drive/root/delta")
+    Call<DriveItemResponse> rootDelta(@Query("token") String token);
+
+    // Follows an @odata.nextLink or @odata.deltaLink returned by a delta query
+    @GET
+    Call<DriveItemResponse> followDelta(@Url String link);
+
+    // Up to 20 operations in one round trip, see BatchExecutor
+    @POST("/v1.0/$batch")
+    Call<BatchResponse> batch(@Body BatchRequest request);
+
+    // Graph's own search over names and content of the whole drive; query is an OData
+    // string literal without its quotes. Further pages come via listNextPage
+    @GET("/v1.0/me/drive/root/search(q='{query}')")
+    Call<DriveItemResponse> searchDrive(@Path("query") String query, @Query("$top") int top);
+
+    // Item metadata, e.g. to get a fresh @microsoft.graph.downloadUrl
+    @GET("/v1.0/me/drive/items/{itemId}")
+    Call<DriveItem> getItem(@Path("itemId") String itemId);
+
+    // Large-file upload: returns an uploadUrl that takes the content in byte ranges
+    @POST("/v1.0/me/drive/items/{parentId}:/{fileName}:/createUploadSession")
+    Call<UploadSession> createUploadSession(@Path("parentId") String parentId, @Path("fileName") String fileName,
+                                            @Body UploadSessionRequest request);
+
+    // A child by name, e.g. to find an upload whose last response was lost
+    @GET("/v1.0/me/drive/items/{parentId}:/{fileName}")
+    Call<DriveItem> getChild(@Path("parentId") String parentId, @Path("fileName") String fileName);
+
+    // Small-file upload in a single request; empty files can't go through a session
+    @PUT("/v1.0/me/drive/items/{parentId}:/{fileName}:/content")
+    Call<DriveItem> uploadContent(@Path("parentId") String parentId, @Path("fileName") String fileName,
+                                  @Query("@microsoft.graph.conflictBehavior") String conflictBehavior,
+                                  @Body RequestBody content);
+
+    // Thumbnail image bytes; Graph redirects to a pre-authenticated URL, 404 if there is none.
+    // size is small, medium, large or a custom size such as c200x200_crop
+    @Streaming
+    @GET("/v1.0/me/drive/items/{itemId}/thumbnails/0/{size}/content")
+    Call<ResponseBody> getThumbnailContent(@Path("itemId") String itemId, @Path("size") String size);
+
     @DELETE("/v1.0/me/drive/items/{itemId}")
     Call<Void> deleteItem(@Path("itemId") String itemId);
 
@@ -0,0 +1,263 @@
+package com.example.onedriveexplorer.network;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+
+/**
+ * Admission control for Graph calls, between Retrofit and OkHttp.
+ *
+ * Every call waits in the queue of its lane; lanes are served in priority order, each with
+ * its own concurrency cap. A 429 or 503 never reaches the caller while retries are left:
+ * with Retry-After the whole scheduler pauses for that long (Graph throttles the app, not one
+ * request), otherwise the call alone backs off exponentially with jitter. When the pause
+ * ends, queued navigation goes out before mutations and background work.
+ *
+ * Callers use the Calls of their service as usual, see OneDriveClient.getService(Lane).
+ */
+public final class RequestScheduler {
+    private static final long BASE_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    /**
+     * In priority order
+     */
+    public enum Lane {
+        // A folder or result the user is waiting for
+        INTERACTIVE(8, 3, 15_000),
+        // Create, rename, delete, upload sessions: may wait longer, must not be lost
+        MUTATION(4, 5, 120_000),
+        // Prefetch, revalidation, thumbnails, bulk download listings
+        BACKGROUND(4, 2, 60_000);
+
+        final int maxConcurrent;
+        final int maxRetries;
+        // A Retry-After longer than this is reported instead of waited out
+        final long maxWaitMs;
+
+        Lane(int maxConcurrent, int maxRetries, long maxWaitMs) {
+            this.maxConcurrent = maxConcurrent;
+            this.maxRetries = maxRetries;
+            this.maxWaitMs = maxWaitMs;
+        }
+    }
+
+    private final Map<Lane, ArrayDeque<Ticket>> queues = new EnumMap<>(Lane.class);
+    private final int[] running = new int[Lane.values().length];
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "RequestScheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Random random = new Random();
+    private long pausedUntilMs;
+    private boolean pumpScheduled;
+
+    public RequestScheduler() {
+        for (Lane lane : Lane.values()) queues.put(lane, new ArrayDeque<>());
+    }
+
+    /**
+     * A call's place in line. lane can change while it waits, see promote().
+     */
+    static final class Ticket {
+        final ScheduledCall<?> owner;
+        Lane lane;
+
+        Ticket(ScheduledCall<?> owner, Lane lane) {
+            this.owner = owner;
+            this.lane = lane;
+        }
+    }
+
+    // ===== Retrofit =====
+
+    /**
+     * Routes the calls of one Retrofit service through this scheduler. Calls other than GET
+     * on an INTERACTIVE service are mutations and go to that lane.
+     */
+    public CallAdapter.Factory callAdapterFactory(Lane lane) {
+        return new CallAdapter.Factory() {
+            @Override
+            public CallAdapter<?, ?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+                if (getRawType(returnType) != Call.class) return null;
+                // The default adapter still delivers callbacks on the main thread
+                @SuppressWarnings("unchecked")
+                CallAdapter<Object, Call<?>> next =
+                        (CallAdapter<Object, Call<?>>) retrofit.nextCallAdapter(this, returnType, annotations);
+                Lane callLane = lane == Lane.INTERACTIVE && !isGet(annotations) ? Lane.MUTATION : lane;
+                return new CallAdapter<Object, Call<?>>() {
+                    @Override
+                    public Type responseType() {
+                        return next.responseType();
+                    }
+
+                    @Override
+                    public Call<?> adapt(Call<Object> call) {
+                        return next.adapt(new ScheduledCall<>(call, RequestScheduler.this, callLane));
+                    }
+                };
+            }
+        };
+    }
+
+    private static boolean isGet(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof GET) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Move a queued BACKGROUND call for this request to the INTERACTIVE lane, e.g. when the
+     * user opens a folder that was only being prefetched. No-op once it has started.
+     */
+    public void promote(Request request) {
+        List<Ticket> ready;
+        synchronized (this) {
+            HttpUrl url = request.url();
+            Iterator<Ticket> it = queues.get(Lane.BACKGROUND).iterator();
+            while (it.hasNext()) {
+                Ticket ticket = it.next();
+                if (url.equals(ticket.owner.request().url())) {
+                    it.remove();
+                    ticket.lane = Lane.INTERACTIVE;
+                    queues.get(Lane.INTERACTIVE).add(ticket);
+                }
+            }
+            ready = drain();
+        }
+        start(ready);
+    }
+
+    // ===== Admission =====
+
+    void submit(Ticket ticket) {
+        List<Ticket> ready;
+        synchronized (this) {
+            queues.get(ticket.lane).add(ticket);
+            ready = drain();
+        }
+        start(ready);
+    }
+
+    ScheduledFuture<?> submitLater(Ticket ticket, long delayMs) {
+        return timer.schedule(() -> submit(ticket), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return false if the ticket had already left the queue
+     */
+    synchronized boolean withdraw(Ticket ticket) {
+        return queues.get(ticket.lane).remove(ticket);
+    }
+
+    /**
+     * A started call of this lane has its response (or failed)
+     */
+    void release(Lane lane) {
+        List<Ticket> ready;
+        synchronized (this) {
+            running[lane.ordinal()]--;
+            ready = drain();
+        }
+        start(ready);
+    }
+
+    // Tickets that may start now, counted as running; started outside the lock
+    private List<Ticket> drain() {
+        List<Ticket> ready = new ArrayList<>();
+        long now = now();
+        if (now < pausedUntilMs) {
+            if (!pumpScheduled) {
+                pumpScheduled = true;
+                timer.schedule(this::resume, pausedUntilMs - now, TimeUnit.MILLISECONDS);
+            }
+            return ready;
+        }
+        for (Lane lane : Lane.values()) {
+            ArrayDeque<Ticket> queue = queues.get(lane);
+            while (!queue.isEmpty() && running[lane.ordinal()] < lane.maxConcurrent) {
+                ready.add(queue.poll());
+                running[lane.ordinal()]++;
+            }
+        }
+        return ready;
+    }
+
+    private void resume() {
+        List<Ticket> ready;
+        synchronized (this) {
+            pumpScheduled = false;
+            ready = drain();
+        }
+        start(ready);
+    }
+
+    private static void start(List<Ticket> ready) {
+        for (Ticket ticket : ready) ticket.owner.onTurn();
+    }
+
+    // ===== Throttling =====
+
+    /**
+     * How long to wait before retrying a call that got this response, or -1 to hand the
+     * response to the caller. Retry-After pauses every lane.
+     */
+    long retryDelayMs(Lane lane, int retries, Response<?> response) {
+        int code = response.code();
+        if ((code != 429 && code != 503) || retries >= lane.maxRetries) return -1;
+        long retryAfter = retryAfterMs(response.headers().get("Retry-After"));
+        if (retryAfter > lane.maxWaitMs) return -1;
+        if (retryAfter > 0) {
+            synchronized (this) {
+                pausedUntilMs = Math.max(pausedUntilMs, now() + retryAfter);
+            }
+            // Requeued at once; the pause holds it, and lane order decides who goes first after
+            return 0;
+        }
+        // Equal jitter: half fixed, half random, so retries of a burst spread out
+        long backoff = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << retries);
+        synchronized (random) {
+            return backoff / 2 + (long) (random.nextDouble() * backoff / 2);
+        }
+    }
+
+    /**
+     * Whether a final response means Graph was too busy rather than that the request was wrong
+     */
+    public static boolean isThrottled(int code) {
+        return code == 429 || code == 503;
+    }
+
+    private static long retryAfterMs(String retryAfter) {
+        if (retryAfter == null) return 0;
+        try {
+            return Long.parseLong(retryAfter.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            // HTTP-date form; Graph sends seconds
+            return 0;
+        }
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.onedriveexplorer.network;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ScheduledFuture;
+import okhttp3.Request;
+import okio.Timeout;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * A Retrofit call that waits for its turn in RequestScheduler and is retried there while
+ * Graph throttles it. The caller gets one callback: the first response that is not retried,
+ * or the failure. Each retry runs a clone of the original call.
+ */
+final class ScheduledCall<T> implements Call<T> {
+    private final Call<T> original;
+    private final RequestScheduler scheduler;
+    private final RequestScheduler.Ticket ticket;
+
+    // Guarded by this
+    private boolean executed;
+    private boolean canceled;
+    private boolean delivered;
+    private int retries;
+    private Call<T> current;
+    private ScheduledFuture<?> retryTimer;
+    private Callback<T> callback;
+    // execute() only: signalled when its turn comes or the call is canceled
+    private boolean turn;
+
+    ScheduledCall(Call<T> original, RequestScheduler scheduler, RequestScheduler.Lane lane) {
+        this.original = original;
+        this.scheduler = scheduler;
+        this.ticket = new RequestScheduler.Ticket(this, lane);
+    }
+
+    // ===== Asynchronous =====
+
+    @Override
+    public void enqueue(Callback<T> callback) {
+        synchronized (this) {
+            if (executed) throw new IllegalStateException("Already executed.");
+            executed = true;
+            this.callback = callback;
+        }
+        scheduler.submit(ticket);
+    }
+
+    /**
+     * Called by the scheduler once a slot in the lane is ours
+     */
+    void onTurn() {
+        Call<T> attempt;
+        synchronized (this) {
+            if (callback == null) {
+                // execute() is waiting for this
+                turn = true;
+                notifyAll();
+                return;
+            }
+            if (canceled) {
+                attempt = null;
+            } else {
+                attempt = current = retries == 0 ? original : original.clone();
+            }
+        }
+        if (attempt == null) {
+            scheduler.release(ticket.lane);
+            deliverFailure(new IOException("Canceled"));
+            return;
+        }
+        attempt.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                scheduler.release(ticket.lane);
+                if (!retryLater(response)) deliverResponse(response);
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                scheduler.release(ticket.lane);
+                deliverFailure(t);
+            }
+        });
+    }
+
+    private boolean retryLater(Response<T> response) {
+        long delay = scheduler.retryDelayMs(ticket.lane, retries, response);
+        synchronized (this) {
+            if (delay < 0 || canceled) return false;
+            retries++;
+        }
+        closeErrorBody(response);
+        ScheduledFuture<?> timer = scheduler.submitLater(ticket, delay);
+        synchronized (this) {
+            retryTimer = timer;
+        }
+        return true;
+    }
+
+    private void deliverResponse(Response<T> response) {
+        Callback<T> cb;
+        synchronized (this) {
+            if (delivered) return;
+            delivered = true;
+            cb = callback;
+        }
+        cb.onResponse(this, response);
+    }
+
+    private void deliverFailure(Throwable t) {
+        Callback<T> cb;
+        synchronized (this) {
+            if (delivered) return;
+            delivered = true;
+            cb = callback;
+        }
+        cb.onFailure(this, t);
+    }
+
+    // ===== Synchronous =====
+
+    /**
+     * Blocks the calling thread in line and through any retries
+     */
+    @Override
+    public Response<T> execute() throws IOException {
+        synchronized (this) {
+            if (executed) throw new IllegalStateException("Already executed.");
+            executed = true;
+        }
+        while (true) {
+            awaitTurn();
+            Call<T> attempt;
+            synchronized (this) {
+                attempt = current = retries == 0 ? original : original.clone();
+            }
+            Response<T> response;
+            try {
+                response = attempt.execute();
+            } finally {
+                scheduler.release(ticket.lane);
+            }
+            long delay = scheduler.retryDelayMs(ticket.lane, retries, response);
+            synchronized (this) {
+                if (delay < 0 || canceled) return response;
+                retries++;
+            }
+            closeErrorBody(response);
+            sleep(delay);
+        }
+    }
+
+    private void awaitTurn() throws IOException {
+        synchronized (this) {
+            turn = false;
+        }
+        scheduler.submit(ticket);
+        synchronized (this) {
+            try {
+                while (!turn && !canceled) wait();
+            } catch (InterruptedException e) {
+                canceled = true;
+            }
+            if (turn && !canceled) return;
+        }
+        // Canceled in line: give the slot back if it was granted meanwhile
+        if (!scheduler.withdraw(ticket)) {
+            synchronized (this) {
+                try {
+                    while (!turn) wait();
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            scheduler.release(ticket.lane);
+        }
+        throw new InterruptedIOException("Canceled");
+    }
+
+    private synchronized void sleep(long millis) throws IOException {
+        long until = System.currentTimeMillis() + millis;
+        try {
+            for (long left = millis; left > 0 && !canceled; left = until - System.currentTimeMillis()) {
+                wait(left);
+            }
+        } catch (InterruptedException e) {
+            canceled = true;
+        }
+        if (canceled) throw new InterruptedIOException("Canceled");
+    }
+
+    // ===== Call =====
+
+    @Override
+    public void cancel() {
+        Call<T> attempt;
+        ScheduledFuture<?> timer;
+        boolean async;
+        synchronized (this) {
+            if (canceled) return;
+            canceled = true;
+            attempt = current;
+            timer = retryTimer;
+            async = callback != null;
+            notifyAll();
+        }
+        // In flight: OkHttp reports the cancellation through the attempt's callback
+        if (attempt != null) attempt.cancel();
+        // Waiting in line or for a retry: nothing else will call back, so do it here
+        if (async && (scheduler.withdraw(ticket) || (timer != null && timer.cancel(false)))) {
+            deliverFailure(new IOException("Canceled"));
+        }
+    }
+
+    @Override
+    public synchronized boolean isCanceled() {
+        return canceled || (current != null && current.isCanceled());
+    }
+
+    @Override
+    public synchronized boolean isExecuted() {
+        return executed;
+    }
+
+    @Override
+    public Call<T> clone() {
+        return new ScheduledCall<>(original.clone(), scheduler, ticket.lane);
+    }
+
+    @Override
+    public Request request() {
+        return original.request();
+    }
+
+    @Override
+    public Timeout timeout() {
+        return original.timeout();
+    }
+
+    private static void closeErrorBody(Response<?> response) {
+        if (response.errorBody() != null) response.errorBody().close();
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.onedriveexplorer.network;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import com.example.onedriveexplorer.models.TokenResponse;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import okhttp3.Authenticator;
+import okhttp3.Request;
+import okhttp3.Route;
+import retrofit2.Response;
+
+/**
+ * Owns the Graph access token: keeps it with its expiry in SharedPreferences, refreshes it a few
+ * minutes before it expires, and recovers from 401s as an OkHttp Authenticator.
+ *
+ * Refreshes are serialized: when several requests fail with the same stale token at once, one of
+ * them fetches a new token and the others wait for it, then every failed request is replayed.
+ */
+public class TokenManager implements Authenticator {
+    private static final String TAG = "TokenManager";
+    private static final String KEY_TOKEN = "access_token";
+    private static final String KEY_EXPIRES_AT = "expires_at";
+    // Refresh this long before expiry, so requests in flight never carry an expired token
+    private static final long REFRESH_MARGIN_MS = 5 * 60 * 1000;
+    // Used when the token server doesn't send expires_in
+    private static final long DEFAULT_LIFETIME_MS = 60 * 60 * 1000;
+    // After a failed refresh, 401s within this window fail fast instead of hammering the server
+    private static final long FAILURE_COOLDOWN_MS = 10 * 1000;
+
+    private final SharedPreferences prefs;
+    private final TokenService tokenService;
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable proactiveRefresh = () -> refreshExecutor.execute(this::refreshNow);
+
+    private volatile String token;
+    private volatile long expiresAt;      // wall clock, it has to survive restarts
+    private long lastFailureAt;           // guarded by this
+
+    public interface Callback {
+        void onReady(boolean fromCache);
+        void onError(String message);
+    }
+
+    public TokenManager(SharedPreferences prefs, TokenService tokenService) {
+        this.prefs = prefs;
+        this.tokenService = tokenService;
+        this.token = prefs.getString(KEY_TOKEN, null);
+        this.expiresAt = prefs.getLong(KEY_EXPIRES_AT, 0);
+    }
+
+    /**
+     * Make sure a usable token is available: the saved one if it is still fresh, otherwise a
+     * new one from the token server. The callback runs on the main thread.
+     */
+    public void ensureToken(Callback callback) {
+        if (isFresh()) {
+            scheduleProactiveRefresh();
+            callback.onReady(true);
+            return;
+        }
+        refreshExecutor.execute(() -> {
+            String previous = token;
+            String result = refresh(previous);
+            if (result != null) {
+                mainHandler.post(() -> callback.onReady(false));
+            } else {
+                mainHandler.post(() -> callback.onError("Failed to fetch token"));
+            }
+        });
+    }
+
+    /**
+     * Token for an outgoing request, on an OkHttp thread. A token close to expiry is still
+     * used while a refresh runs in the background; an expired one is replaced first.
+     */
+    String getAccessToken() {
+        String current = token;
+        if (current != null && isFresh()) return current;
+        if (current != null && System.currentTimeMillis() < expiresAt) {
+            refreshExecutor.execute(this::refreshNow);
+            return current;
+        }
+        return refresh(current);
+    }
+
+    // ===== Authenticator =====
+
+    @Override
+    public Request authenticate(Route route, okhttp3.Response response) {
+        // Already replayed once with a new token; the 401 isn't about expiry
+        if (response.priorResponse() != null) return null;
+        String header = response.request().header("Authorization");
+        String failed = header != null && header.startsWith("Bearer ") ? header.substring(7) : null;
+        String fresh = refresh(failed);
+        if (fresh == null) return null;
+        return response.request().newBuilder()
+                .header("Authorization", "Bearer " + fresh)
+                .build();
+    }
+
+    // ===== Refreshing =====
+
+    private boolean isFresh() {
+        return token != null && expiresAt - System.currentTimeMillis() > REFRESH_MARGIN_MS;
+    }
+
+    // Several requests may queue this while the token is close to expiry; only the first refreshes
+    private void refreshNow() {
+        if (!isFresh()) refresh(token);
+    }
+
+    /**
+     * Replace staleToken with a new one, unless another caller already did.
+     *
+     * @return the token to use, or null if none could be fetched
+     */
+    private synchronized String refresh(String staleToken) {
+        if (token != null && !token.equals(staleToken) && System.currentTimeMillis() < expiresAt) {
+            return token;
+        }
+        if (System.currentTimeMillis() - lastFailureAt < FAILURE_COOLDOWN_MS) return null;
+        try {
+            Response<TokenResponse> response = tokenService.getToken().execute();
+            if (response.isSuccessful() && response.body() != null && response.body().accessToken != null) {
+                TokenResponse body = response.body();
+                long lifetime = body.expiresIn > 0 ? body.expiresIn * 1000L : DEFAULT_LIFETIME_MS;
+                store(body.accessToken, System.currentTimeMillis() + lifetime);
+                return token;
+            }
+            Log.w(TAG, "Token refresh failed: HTTP " + response.code());
+        } catch (IOException e) {
+            Log.w(TAG, "Token refresh failed", e);
+        }
+        lastFailureAt = System.currentTimeMillis();
+        return null;
+    }
+
+    private void store(String newToken, long newExpiresAt) {
+        expiresAt = newExpiresAt;
+        token = newToken;
+        lastFailureAt = 0;
+        prefs.edit()
+                .putString(KEY_TOKEN, newToken)
+                .putLong(KEY_EXPIRES_AT, newExpiresAt)
+                .apply();
+        scheduleProactiveRefresh();
+    }
+
+    private void scheduleProactiveRefresh() {
+        long delay = Math.max(0, expiresAt - REFRESH_MARGIN_MS - System.currentTimeMillis());
+        mainHandler.removeCallbacks(proactiveRefresh);
+        mainHandler.postDelayed(proactiveRefresh, delay);
+    }
+}
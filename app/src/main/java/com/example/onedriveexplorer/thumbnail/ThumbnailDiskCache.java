@@ -0,0 +1,110 @@
+package com.example.onedriveexplorer.thumbnail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded LRU of encoded thumbnails, one file per key.
+ * Access order survives restarts through the files' modification times.
+ * Safe to call from several worker threads.
+ */
+class ThumbnailDiskCache {
+    private final File dir;
+    private final long maxBytes;
+    // File name -> size, least recently used first
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    ThumbnailDiskCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        dir.mkdirs();
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp")) {
+                file.delete();
+                continue;
+            }
+            entries.put(file.getName(), file.length());
+            totalBytes += file.length();
+        }
+    }
+
+    /**
+     * @return the cached file, or null on a miss
+     */
+    synchronized File get(String key) {
+        String name = fileName(key);
+        if (entries.get(name) == null) return null;
+        File file = new File(dir, name);
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Copy the stream into the cache through a temp file, then evict down to the budget
+     */
+    File put(String key, InputStream in) throws IOException {
+        String name = fileName(key);
+        File tmp = new File(dir, name + "." + Thread.currentThread().getId() + ".tmp");
+        long length = 0;
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            byte[] buffer = new byte[16 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                length += read;
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        File file = new File(dir, name);
+        synchronized (this) {
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Cannot replace " + file);
+            }
+            Long previous = entries.put(name, length);
+            totalBytes += length - (previous != null ? previous : 0);
+            trim();
+        }
+        return file;
+    }
+
+    synchronized void remove(String key) {
+        String name = fileName(key);
+        Long size = entries.remove(name);
+        if (size != null) totalBytes -= size;
+        new File(dir, name).delete();
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            new File(dir, eldest.getKey()).delete();
+            totalBytes -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    // Keys contain characters that aren't safe in file names
+    private static String fileName(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return Long.toHexString(hash);
+    }
+}
@@ -0,0 +1,354 @@
+package com.example.onedriveexplorer.thumbnail;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import com.example.onedriveexplorer.models.DriveItem;
+import com.example.onedriveexplorer.network.OneDriveService;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Loads Graph thumbnails into ImageViews for the grid view.
+ *
+ * Lookups go memory cache, then disk cache, then the /thumbnails endpoint. Decoding runs on
+ * worker threads, downsampled to the view size and, where possible, into a bitmap that the
+ * memory cache evicted. Binding a view to another item, or recycling it, cancels what it was
+ * waiting for. Public methods are called on the main thread.
+ */
+public class ThumbnailLoader {
+    private static final String TAG = "ThumbnailLoader";
+    // Graph's "medium" is at most 176 px on the long side, plenty for a grid card
+    private static final String THUMBNAIL_SIZE = "medium";
+    private static final int DEFAULT_TARGET_PX = 176;
+    public static final long DEFAULT_DISK_BYTES = 32L * 1024 * 1024;
+    private static final int LOAD_THREADS = 3;
+    private static final int MAX_REUSABLE_BITMAPS = 8;
+
+    private final OneDriveService service;
+    private final ThumbnailDiskCache diskCache;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final ExecutorService loadExecutor = Executors.newFixedThreadPool(LOAD_THREADS);
+    // Prefetches get their own thread so they never hold up what is on screen
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Key each view shows or waits for; an evicted bitmap is only reused if no view holds its key
+    private final Map<ImageView, String> targets = new WeakHashMap<>();
+    private final Map<String, Job> jobs = new HashMap<>();
+    // Items Graph has no thumbnail for, so they aren't asked for again
+    private final Set<String> missing = Collections.synchronizedSet(new HashSet<>());
+    private final List<Bitmap> reusable = new ArrayList<>();  // guarded by itself
+    private volatile int targetPx = DEFAULT_TARGET_PX;
+    private final AtomicInteger diskHits = new AtomicInteger();
+    private final AtomicInteger downloads = new AtomicInteger();
+
+    public ThumbnailLoader(OneDriveService service, File cacheDir) {
+        this(service, cacheDir, DEFAULT_DISK_BYTES);
+    }
+
+    public ThumbnailLoader(OneDriveService service, File cacheDir, long maxDiskBytes) {
+        this.service = service;
+        this.diskCache = new ThumbnailDiskCache(cacheDir, maxDiskBytes);
+        // An eighth of the heap, counted in KB
+        int maxKb = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8 / 1024);
+        this.memoryCache = new LruCache<String, Bitmap>(maxKb) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount() / 1024;
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (evicted && !targets.containsValue(key)) offerReusable(oldValue);
+            }
+        };
+    }
+
+    /**
+     * Only images and videos get previews; everything else keeps its type icon
+     */
+    public static boolean hasThumbnail(DriveItem item) {
+        return item.file != null && hasThumbnail(item.isDirectory(), item.file.mimeType);
+    }
+
+    /**
+     * Same, from a listing's columns
+     */
+    public static boolean hasThumbnail(boolean isFolder, String mimeType) {
+        if (isFolder || mimeType == null) return false;
+        return mimeType.startsWith("image/") || mimeType.startsWith("video/");
+    }
+
+    /**
+     * Show the item's thumbnail in the view once it is available. The view keeps whatever
+     * it shows now (the type icon) until then.
+     */
+    public void load(DriveItem item, ImageView view) {
+        cancel(view);
+        if (!hasThumbnail(item)) return;
+        String key = key(item);
+        if (missing.contains(key)) return;
+
+        ViewGroup.LayoutParams lp = view.getLayoutParams();
+        if (lp != null && Math.max(lp.width, lp.height) > 0) targetPx = Math.max(lp.width, lp.height);
+
+        targets.put(view, key);
+        Bitmap cached = memoryCache.get(key);
+        if (cached != null) {
+            show(view, cached);
+            return;
+        }
+
+        Job job = jobs.get(key);
+        if (job == null) {
+            job = new Job(item, key);
+            jobs.put(key, job);
+            job.future = loadExecutor.submit(job);
+        } else if (job.prefetch && job.claim()) {
+            // Someone is looking at it now: move it off the prefetch thread, which skips it if it still gets there
+            job.future.cancel(false);
+            job.future = loadExecutor.submit(job::execute);
+        }
+        job.prefetch = false;
+        job.waiting.add(view);
+    }
+
+    /**
+     * The view was recycled or bound to something else; drop its pending load
+     */
+    public void cancel(ImageView view) {
+        String key = targets.remove(view);
+        view.setScaleType(ImageView.ScaleType.FIT_CENTER);
+        if (key == null) return;
+        Job job = jobs.get(key);
+        if (job == null) return;
+        job.waiting.remove(view);
+        if (job.waiting.isEmpty() && !job.prefetch) {
+            job.cancel();
+            jobs.remove(key);
+        }
+    }
+
+    /**
+     * Warm the caches for items just off screen
+     */
+    public void prefetch(List<DriveItem> items) {
+        for (DriveItem item : items) {
+            if (!hasThumbnail(item)) continue;
+            String key = key(item);
+            if (missing.contains(key) || jobs.containsKey(key) || memoryCache.get(key) != null) continue;
+            Job job = new Job(item, key);
+            job.prefetch = true;
+            jobs.put(key, job);
+            job.future = prefetchExecutor.submit(job);
+        }
+    }
+
+    /**
+     * Drop prefetches that haven't started, e.g. when the user scrolled away or left the folder
+     */
+    public void cancelPrefetches() {
+        Iterator<Job> it = jobs.values().iterator();
+        while (it.hasNext()) {
+            Job job = it.next();
+            if (job.prefetch) {
+                job.cancel();
+                it.remove();
+            }
+        }
+    }
+
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            memoryCache.evictAll();
+            synchronized (reusable) {
+                reusable.clear();
+            }
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            memoryCache.trimToSize(memoryCache.maxSize() / 2);
+        }
+    }
+
+    /**
+     * Where previews came from so far: memory, disk or Graph
+     */
+    public String getStats() {
+        return "memory " + memoryCache.hitCount() + " hit / " + memoryCache.missCount() + " miss"
+                + ", disk " + diskHits.get() + " hit, " + downloads.get() + " downloaded";
+    }
+
+    public void shutdown() {
+        loadExecutor.shutdownNow();
+        prefetchExecutor.shutdownNow();
+    }
+
+    // cTag changes with the content, so an edited photo gets a new thumbnail
+    private static String key(DriveItem item) {
+        return item.id + "|" + (item.cTag != null ? item.cTag : item.eTag);
+    }
+
+    private void show(ImageView view, Bitmap bitmap) {
+        view.setScaleType(ImageView.ScaleType.CENTER_CROP);
+        view.setImageBitmap(bitmap);
+    }
+
+    private void deliver(Job job, Bitmap bitmap) {
+        if (jobs.get(job.key) == job) jobs.remove(job.key);
+        if (bitmap == null) return;
+        memoryCache.put(job.key, bitmap);
+        for (ImageView view : job.waiting) {
+            if (job.key.equals(targets.get(view))) show(view, bitmap);
+        }
+    }
+
+    // ===== Worker side =====
+
+    private class Job implements Runnable {
+        final DriveItem item;
+        final String key;
+        // Views waiting for this key; main thread only
+        final Set<ImageView> waiting = Collections.newSetFromMap(new WeakHashMap<>());
+        boolean prefetch;
+        Future<?> future;
+        // Whichever thread claims it first runs it; the prefetch thread and a move to loadExecutor race for it
+        private final AtomicBoolean started = new AtomicBoolean();
+        volatile boolean cancelled;
+        volatile Call<ResponseBody> call;
+
+        Job(DriveItem item, String key) {
+            this.item = item;
+            this.key = key;
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (future != null) future.cancel(false);
+            Call<ResponseBody> running = call;
+            if (running != null) running.cancel();
+        }
+
+        boolean claim() {
+            return started.compareAndSet(false, true);
+        }
+
+        @Override
+        public void run() {
+            if (claim()) execute();
+        }
+
+        // Once per job, on whichever thread claimed it
+        void execute() {
+            Bitmap bitmap = null;
+            try {
+                if (!cancelled) bitmap = fetchAndDecode(this);
+            } catch (IOException e) {
+                if (!cancelled) Log.d(TAG, "No thumbnail for " + item.name + ": " + e.getMessage());
+            }
+            final Bitmap result = bitmap;
+            mainHandler.post(() -> deliver(this, result));
+        }
+    }
+
+    private Bitmap fetchAndDecode(Job job) throws IOException {
+        File file = diskCache.get(job.key);
+        if (file == null) {
+            Call<ResponseBody> call = service.getThumbnailContent(job.item.id, THUMBNAIL_SIZE);
+            job.call = call;
+            if (job.cancelled) return null;
+            downloads.incrementAndGet();
+            Response<ResponseBody> response = call.execute();
+            if (response.code() == 404) {
+                missing.add(job.key);
+                return null;
+            }
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("HTTP " + response.code());
+            }
+            try (ResponseBody body = response.body()) {
+                file = diskCache.put(job.key, body.byteStream());
+            }
+        } else {
+            diskHits.incrementAndGet();
+        }
+        if (job.cancelled) return null;
+        Bitmap bitmap = decode(file, targetPx);
+        // Unreadable or deleted under us; fetch it again next time
+        if (bitmap == null) diskCache.remove(job.key);
+        return bitmap;
+    }
+
+    private Bitmap decode(File file, int target) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= target && options.outHeight / (sampleSize * 2) >= target) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inMutable = true;
+        int width = (options.outWidth + sampleSize - 1) / sampleSize;
+        int height = (options.outHeight + sampleSize - 1) / sampleSize;
+        options.inBitmap = takeReusable(width * height * 4);
+        try {
+            return BitmapFactory.decodeFile(file.getPath(), options);
+        } catch (IllegalArgumentException e) {
+            // The reused bitmap didn't fit this image after all
+            options.inBitmap = null;
+            return BitmapFactory.decodeFile(file.getPath(), options);
+        }
+    }
+
+    // ===== Bitmap reuse =====
+
+    private void offerReusable(Bitmap bitmap) {
+        if (!bitmap.isMutable()) return;
+        synchronized (reusable) {
+            if (reusable.size() < MAX_REUSABLE_BITMAPS) reusable.add(bitmap);
+        }
+    }
+
+    /**
+     * Smallest pooled bitmap with room for byteCount bytes, or null
+     */
+    private Bitmap takeReusable(int byteCount) {
+        synchronized (reusable) {
+            Bitmap best = null;
+            for (Bitmap candidate : reusable) {
+                int size = candidate.getAllocationByteCount();
+                if (size >= byteCount && (best == null || size < best.getAllocationByteCount())) best = candidate;
+            }
+            if (best != null) reusable.remove(best);
+            return best;
+        }
+    }
+}
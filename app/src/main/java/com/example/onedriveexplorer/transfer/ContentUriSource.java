@@ -0,0 +1,64 @@
+package com.example.onedriveexplorer.transfer;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.OpenableColumns;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Upload source backed by a document picked through the Storage Access Framework
+ */
+public class ContentUriSource implements UploadEngine.Source {
+    private final ContentResolver resolver;
+    private final Uri uri;
+    private final String name;
+    private final long size;
+
+    private ContentUriSource(ContentResolver resolver, Uri uri, String name, long size) {
+        this.resolver = resolver;
+        this.uri = uri;
+        this.name = name;
+        this.size = size;
+    }
+
+    /**
+     * @return the source, or null if the provider doesn't report a name and size
+     */
+    public static ContentUriSource from(ContentResolver resolver, Uri uri) {
+        try (Cursor cursor = resolver.query(uri, new String[] {OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE},
+                null, null, null)) {
+            if (cursor == null || !cursor.moveToFirst() || cursor.isNull(1)) return null;
+            return new ContentUriSource(resolver, uri, cursor.getString(0), cursor.getLong(1));
+        } catch (SecurityException e) {
+            // Permission for a saved Uri was revoked
+            return null;
+        }
+    }
+
+    @Override
+    public String getKey() {
+        return uri.toString();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public FileChannel openChannel() throws IOException {
+        ParcelFileDescriptor pfd = resolver.openFileDescriptor(uri, "r");
+        if (pfd == null) throw new IOException("Cannot open " + uri);
+        // Closing the stream's channel closes the descriptor as well
+        return new ParcelFileDescriptor.AutoCloseInputStream(pfd).getChannel();
+    }
+}
@@ -0,0 +1,338 @@
+package com.example.onedriveexplorer.transfer;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import com.example.onedriveexplorer.models.DriveItem;
+import com.example.onedriveexplorer.models.DriveItemResponse;
+import com.example.onedriveexplorer.network.OneDriveService;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+/**
+ * Downloads files and whole folder trees.
+ *
+ * The tree is walked with listChildren; every listing and every file chunk is a task
+ * on one bounded worker pool. Files larger than one chunk are fetched as parallel
+ * HTTP Range requests and written in place through a FileChannel. Finished chunks are
+ * recorded in a state file next to the ".part" file, so an interrupted download
+ * picks up where it stopped.
+ */
+public class DownloadEngine {
+    private static final String TAG = "DownloadEngine";
+    public static final int DEFAULT_WORKERS = 4;
+    static final long CHUNK_SIZE = 8L * 1024 * 1024;
+    private static final int LIST_PAGE_SIZE = 200;
+    private static final int MAX_CHUNK_ATTEMPTS = 3;
+    private static final long PROGRESS_INTERVAL_MS = 500;
+    private static final String PART_SUFFIX = ".part";
+    private static final String STATE_SUFFIX = ".part.state";
+
+    private final OneDriveService service;
+    // Download URLs are pre-authenticated; they must not get the Graph bearer token
+    private final OkHttpClient contentClient;
+    private final ExecutorService workers;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public interface Listener {
+        void onProgress(long bytesDone, long bytesTotal, double bytesPerSecond);
+        void onComplete(int files, long bytes, double bytesPerSecond, List<String> failures);
+    }
+
+    public DownloadEngine(OneDriveService service, OkHttpClient contentClient) {
+        this(service, contentClient, DEFAULT_WORKERS);
+    }
+
+    public DownloadEngine(OneDriveService service, OkHttpClient contentClient, int workerCount) {
+        this.service = service;
+        this.contentClient = contentClient;
+        this.workers = Executors.newFixedThreadPool(workerCount);
+    }
+
+    /**
+     * Download a file, or a folder with everything below it, into destDir
+     */
+    public void download(DriveItem item, File destDir, Listener listener) {
+        Job job = new Job(listener);
+        if (item.isDirectory()) {
+            File dir = new File(destDir, safeName(item.name));
+            job.submit(() -> job.listFolder(item.id, dir));
+        } else {
+            job.submit(() -> job.startFile(item, destDir));
+        }
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * One download() call: counters, pending tasks and failures
+     */
+    private class Job {
+        private final Listener listener;
+        private final AtomicInteger pendingTasks = new AtomicInteger();
+        private final AtomicInteger fileCount = new AtomicInteger();
+        private final AtomicLong bytesTotal = new AtomicLong();
+        private final AtomicLong bytesDone = new AtomicLong();
+        private final AtomicLong bytesThisSession = new AtomicLong();  // excludes resumed chunks
+        private final AtomicLong lastProgressAt = new AtomicLong();
+        private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        private final long startedAt = System.currentTimeMillis();
+
+        Job(Listener listener) {
+            this.listener = listener;
+        }
+
+        void submit(Runnable task) {
+            pendingTasks.incrementAndGet();
+            workers.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    if (pendingTasks.decrementAndGet() == 0) finish();
+                }
+            });
+        }
+
+        // ===== Tree walk =====
+
+        void listFolder(String folderId, File dir) {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                failures.add(dir.getPath() + ": cannot create folder");
+                return;
+            }
+            try {
+                Response<DriveItemResponse> response = service.listChildren(folderId, LIST_PAGE_SIZE, null).execute();
+                while (true) {
+                    if (!response.isSuccessful() || response.body() == null) {
+                        failures.add(dir.getPath() + ": listing failed (" + response.code() + ")");
+                        return;
+                    }
+                    DriveItemResponse body = response.body();
+                    if (body.value != null) {
+                        for (DriveItem child : body.value) {
+                            if (child.isDirectory()) {
+                                File childDir = new File(dir, safeName(child.name));
+                                submit(() -> listFolder(child.id, childDir));
+                            } else {
+                                submit(() -> startFile(child, dir));
+                            }
+                        }
+                    }
+                    if (body.nextLink == null) return;
+                    response = service.listNextPage(body.nextLink).execute();
+                }
+            } catch (IOException e) {
+                failures.add(dir.getPath() + ": " + e.getMessage());
+            }
+        }
+
+        // ===== Files =====
+
+        void startFile(DriveItem item, File dir) {
+            File target = new File(dir, safeName(item.name));
+            File part = new File(dir, safeName(item.name) + PART_SUFFIX);
+            File stateFile = new File(dir, safeName(item.name) + STATE_SUFFIX);
+            fileCount.incrementAndGet();
+            bytesTotal.addAndGet(item.size);
+
+            if (target.exists() && target.length() == item.size && !stateFile.exists()) {
+                // Finished in an earlier run
+                bytesDone.addAndGet(item.size);
+                return;
+            }
+
+            DownloadState state = DownloadState.read(stateFile);
+            if (state == null || !state.matches(item.size, CHUNK_SIZE, item.eTag) || !part.exists()) {
+                state = new DownloadState(item.size, CHUNK_SIZE, item.eTag);
+            } else {
+                bytesDone.addAndGet(state.completedBytes());
+            }
+
+            FileDownload file;
+            try {
+                file = new FileDownload(item, target, part, stateFile, state);
+            } catch (IOException e) {
+                failures.add(target.getPath() + ": " + e.getMessage());
+                return;
+            }
+
+            if (file.remaining.get() == 0) {
+                file.finish();
+                return;
+            }
+            for (int i = 0; i < state.chunkCount(); i++) {
+                if (state.isCompleted(i)) continue;
+                final int index = i;
+                submit(() -> file.downloadChunk(index));
+            }
+        }
+
+        /**
+         * A single file being assembled from chunks by several workers
+         */
+        private class FileDownload {
+            final DriveItem item;
+            final File target;
+            final File part;
+            final File stateFile;
+            final DownloadState state;
+            final FileChannel channel;
+            final AtomicInteger remaining;
+            volatile boolean failed;
+
+            FileDownload(DriveItem item, File target, File part, File stateFile, DownloadState state) throws IOException {
+                this.item = item;
+                this.target = target;
+                this.part = part;
+                this.stateFile = stateFile;
+                this.state = state;
+                RandomAccessFile raf = new RandomAccessFile(part, "rw");
+                raf.setLength(item.size);
+                this.channel = raf.getChannel();
+                this.remaining = new AtomicInteger(state.chunkCount() - state.completed.cardinality());
+            }
+
+            void downloadChunk(int index) {
+                if (failed) return;
+                long start = state.chunkStart(index);
+                long end = start + state.chunkLength(index) - 1;
+
+                IOException lastError = null;
+                for (int attempt = 1; attempt <= MAX_CHUNK_ATTEMPTS && !failed; attempt++) {
+                    long[] written = new long[1];
+                    try {
+                        writeRange(start, end, written);
+                        // On disk before it is recorded as done, or a power loss could leave a "done" chunk of zeros
+                        channel.force(false);
+                        state.markCompleted(index, stateFile);
+                        if (remaining.decrementAndGet() == 0) finish();
+                        return;
+                    } catch (IOException e) {
+                        // The retry rewrites the whole chunk, don't count these bytes twice
+                        bytesDone.addAndGet(-written[0]);
+                        bytesThisSession.addAndGet(-written[0]);
+                        lastError = e;
+                        Log.w(TAG, item.name + " chunk " + index + " attempt " + attempt + " failed", e);
+                    }
+                }
+                synchronized (this) {
+                    if (failed) return;
+                    failed = true;
+                }
+                failures.add(target.getPath() + ": " + (lastError != null ? lastError.getMessage() : "failed"));
+                closeQuietly();
+            }
+
+            private void writeRange(long start, long end, long[] written) throws IOException {
+                Request request = new Request.Builder()
+                        .url(downloadUrl(false))
+                        .header("Range", "bytes=" + start + "-" + end)
+                        .build();
+                okhttp3.Response response = contentClient.newCall(request).execute();
+                try {
+                    if (response.code() == 401 || response.code() == 403 || response.code() == 410) {
+                        // The pre-authenticated URL expired (about an hour); get a fresh one next attempt
+                        downloadUrl(true);
+                        throw new IOException("Download URL expired: " + response.code());
+                    }
+                    // 206 for a range; a plain 200 is only acceptable if it is the whole file
+                    boolean whole = response.code() == 200 && start == 0 && end == item.size - 1;
+                    if (response.code() != 206 && !whole) throw new IOException("HTTP " + response.code());
+
+                    ResponseBody body = response.body();
+                    if (body == null) throw new IOException("Empty body");
+                    InputStream in = body.byteStream();
+                    byte[] buffer = new byte[64 * 1024];
+                    long position = start;
+                    int read;
+                    while (position <= end && (read = in.read(buffer)) != -1) {
+                        ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                        while (chunk.hasRemaining()) position += channel.write(chunk, position);
+                        written[0] += read;
+                        bytesDone.addAndGet(read);
+                        bytesThisSession.addAndGet(read);
+                        reportProgress();
+                    }
+                    if (position <= end) throw new IOException("Connection closed early");
+                } finally {
+                    response.close();
+                }
+            }
+
+            private synchronized String downloadUrl(boolean refresh) throws IOException {
+                if (item.downloadUrl == null || refresh) {
+                    Response<DriveItem> response = service.getItem(item.id).execute();
+                    if (!response.isSuccessful() || response.body() == null || response.body().downloadUrl == null) {
+                        throw new IOException("No download URL (" + response.code() + ")");
+                    }
+                    item.downloadUrl = response.body().downloadUrl;
+                }
+                return item.downloadUrl;
+            }
+
+            void finish() {
+                closeQuietly();
+                if (target.exists()) target.delete();
+                if (part.renameTo(target)) {
+                    stateFile.delete();
+                } else {
+                    failures.add(target.getPath() + ": cannot move into place");
+                }
+            }
+
+            private void closeQuietly() {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        // ===== Reporting =====
+
+        private double bytesPerSecond() {
+            long elapsed = Math.max(1, System.currentTimeMillis() - startedAt);
+            return bytesThisSession.get() * 1000.0 / elapsed;
+        }
+
+        private void reportProgress() {
+            long now = System.currentTimeMillis();
+            long last = lastProgressAt.get();
+            if (now - last < PROGRESS_INTERVAL_MS || !lastProgressAt.compareAndSet(last, now)) return;
+            long done = bytesDone.get();
+            long total = bytesTotal.get();
+            double rate = bytesPerSecond();
+            mainHandler.post(() -> listener.onProgress(done, total, rate));
+        }
+
+        private void finish() {
+            int files = fileCount.get();
+            long bytes = bytesDone.get();
+            double rate = bytesPerSecond();
+            List<String> failed = new ArrayList<>(failures);
+            mainHandler.post(() -> listener.onComplete(files, bytes, rate, failed));
+        }
+    }
+
+    // Graph names may contain characters that are fine in OneDrive but not on every filesystem
+    private static String safeName(String name) {
+        return name == null ? "unnamed" : name.replaceAll("[\\\\/:*?\"<>|]", "_");
+    }
+}
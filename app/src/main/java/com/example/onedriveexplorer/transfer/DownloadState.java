@@ -0,0 +1,102 @@
+package com.example.onedriveexplorer.transfer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * Which chunks of a partially downloaded file are already on disk.
+ * Stored next to the ".part" file; a changed eTag or size invalidates it.
+ */
+class DownloadState {
+    private static final int MAGIC = 0x4F44444C;  // "ODDL"
+    private static final int VERSION = 1;
+
+    final long size;
+    final long chunkSize;
+    final String eTag;
+    final BitSet completed;
+
+    DownloadState(long size, long chunkSize, String eTag) {
+        this(size, chunkSize, eTag, new BitSet());
+    }
+
+    private DownloadState(long size, long chunkSize, String eTag, BitSet completed) {
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.eTag = eTag;
+        this.completed = completed;
+    }
+
+    int chunkCount() {
+        return (int) ((size + chunkSize - 1) / chunkSize);
+    }
+
+    long chunkStart(int index) {
+        return index * chunkSize;
+    }
+
+    long chunkLength(int index) {
+        return Math.min(chunkSize, size - chunkStart(index));
+    }
+
+    long completedBytes() {
+        long bytes = 0;
+        for (int i = completed.nextSetBit(0); i >= 0; i = completed.nextSetBit(i + 1)) {
+            bytes += chunkLength(i);
+        }
+        return bytes;
+    }
+
+    boolean matches(long size, long chunkSize, String eTag) {
+        return this.size == size && this.chunkSize == chunkSize
+                && (this.eTag == null ? eTag == null : this.eTag.equals(eTag));
+    }
+
+    // ===== Persistence =====
+
+    synchronized void markCompleted(int index, File stateFile) throws IOException {
+        completed.set(index);
+        File tmp = new File(stateFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(size);
+            out.writeLong(chunkSize);
+            out.writeBoolean(eTag != null);
+            if (eTag != null) out.writeUTF(eTag);
+            long[] words = completed.toLongArray();
+            out.writeInt(words.length);
+            for (long word : words) out.writeLong(word);
+        }
+        if (!tmp.renameTo(stateFile)) throw new IOException("Cannot replace " + stateFile);
+    }
+
+    synchronized boolean isCompleted(int index) {
+        return completed.get(index);
+    }
+
+    /**
+     * @return the saved state, or null if there is none or it is unreadable
+     */
+    static DownloadState read(File stateFile) {
+        if (!stateFile.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            long size = in.readLong();
+            long chunkSize = in.readLong();
+            String eTag = in.readBoolean() ? in.readUTF() : null;
+            long[] words = new long[in.readInt()];
+            for (int i = 0; i < words.length; i++) words[i] = in.readLong();
+            return new DownloadState(size, chunkSize, eTag, BitSet.valueOf(words));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.example.onedriveexplorer.transfer;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import com.example.onedriveexplorer.models.DriveItem;
+import com.example.onedriveexplorer.models.GraphDateTime;
+import com.example.onedriveexplorer.models.UploadSession;
+import com.example.onedriveexplorer.models.UploadSessionRequest;
+import com.example.onedriveexplorer.network.OneDriveClient;
+import com.example.onedriveexplorer.network.OneDriveService;
+import com.google.gson.Gson;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * Uploads large files through Graph upload sessions.
+ *
+ * Each chunk is streamed from a FileChannel straight into the request, so no more than a
+ * small buffer of the file is ever on the heap. Graph only accepts a session's ranges in
+ * order, so chunks of one file go out one after another; several files upload in parallel.
+ * The session URL and confirmed offset are saved after every chunk, and a resumed upload
+ * asks the server for nextExpectedRanges before continuing. Empty files, which a session
+ * can't take, go up in a single PUT.
+ */
+public class UploadEngine {
+    private static final String TAG = "UploadEngine";
+    public static final int DEFAULT_PARALLEL_FILES = 2;
+    // Must be a multiple of 320 KiB
+    static final long CHUNK_SIZE = 32 * 320 * 1024;
+    private static final int MAX_CHUNK_ATTEMPTS = 5;
+    private static final long BASE_RETRY_DELAY_MS = 1000;
+    // Device and server clocks differ; a finished upload may look slightly older than its session
+    private static final long CLOCK_SKEW_MS = 5 * 60 * 1000;
+    private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+    private final OneDriveService service;
+    // Upload URLs are pre-authenticated; they must not get the Graph bearer token
+    private final OkHttpClient contentClient;
+    private final File stateDir;
+    private final ExecutorService workers;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Gson gson = OneDriveClient.getGson();
+
+    /**
+     * Something to upload. The key must stay the same across app restarts (e.g. a content Uri),
+     * it is how a saved session finds its source again.
+     */
+    public interface Source {
+        String getKey();
+        String getName();
+        long getSize();
+        FileChannel openChannel() throws IOException;
+    }
+
+    public interface SourceResolver {
+        /**
+         * @return the source for a saved key, or null if it is no longer available
+         */
+        Source resolve(String key);
+    }
+
+    public interface Listener {
+        void onChunkUploaded(String name, long bytesDone, long bytesTotal, long chunkLatencyMs, double bytesPerSecond);
+        void onComplete(DriveItem item);
+        void onError(String name, String message);
+    }
+
+    public UploadEngine(OneDriveService service, OkHttpClient contentClient, File stateDir) {
+        this.service = service;
+        this.contentClient = contentClient;
+        this.stateDir = stateDir;
+        this.workers = Executors.newFixedThreadPool(DEFAULT_PARALLEL_FILES);
+    }
+
+    public void upload(Source source, String parentId, Listener listener) {
+        workers.execute(() -> run(source, parentId, listener));
+    }
+
+    /**
+     * Continue every upload that was interrupted in an earlier run
+     */
+    public void resumePending(SourceResolver resolver, Listener listener) {
+        File[] files = stateDir.listFiles((dir, name) -> name.endsWith(".session"));
+        if (files == null) return;
+        for (File file : files) {
+            SessionState state = SessionState.read(file);
+            Source source = state != null ? resolver.resolve(state.sourceKey) : null;
+            if (source == null || source.getSize() != state.size) {
+                file.delete();
+                continue;
+            }
+            upload(source, state.parentId, listener);
+        }
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    // ===== Upload loop, on a worker thread =====
+
+    private void run(Source source, String parentId, Listener listener) {
+        File stateFile = new File(stateDir, Integer.toHexString((source.getKey() + "|" + parentId).hashCode()) + ".session");
+        long size = source.getSize();
+        if (size == 0) {
+            // Upload sessions need at least one byte per range
+            uploadEmpty(source, parentId, listener);
+            return;
+        }
+        long sessionBytes = 0;
+        long startedAt = System.currentTimeMillis();
+
+        try (FileChannel channel = source.openChannel()) {
+            SessionState state = SessionState.read(stateFile);
+            long offset;
+            if (state != null && state.size == size) {
+                try {
+                    offset = queryNextOffset(state.uploadUrl);
+                } catch (IOException e) {
+                    // Server unreachable for the status call; continue from the last confirmed range
+                    offset = state.offset;
+                }
+            } else {
+                state = createSession(source, parentId);
+                state.write(stateFile);
+                offset = 0;
+            }
+
+            int attempt = 0;
+            while (true) {
+                if (offset < 0) {
+                    // The last chunk may have been stored with its response lost; starting over would
+                    // upload a duplicate "name 1.ext"
+                    DriveItem finished = size - state.offset <= CHUNK_SIZE ? findUploaded(source, parentId, state) : null;
+                    if (finished != null) {
+                        stateFile.delete();
+                        mainHandler.post(() -> listener.onComplete(finished));
+                        return;
+                    }
+                    // Session expired or vanished: start a new one from the beginning
+                    state = createSession(source, parentId);
+                    state.write(stateFile);
+                    offset = 0;
+                }
+
+                long length = Math.min(CHUNK_SIZE, size - offset);
+                long chunkStart = System.currentTimeMillis();
+                okhttp3.Response response;
+                try {
+                    response = contentClient.newCall(new Request.Builder()
+                            .url(state.uploadUrl)
+                            .header("Content-Range", "bytes " + offset + "-" + (offset + length - 1) + "/" + size)
+                            .put(new ChannelRangeBody(channel, offset, length))
+                            .build()).execute();
+                } catch (IOException e) {
+                    if (++attempt >= MAX_CHUNK_ATTEMPTS) throw e;
+                    Log.w(TAG, source.getName() + ": chunk at " + offset + " failed, retrying", e);
+                    Thread.sleep(BASE_RETRY_DELAY_MS << (attempt - 1));
+                    offset = queryNextOffset(state.uploadUrl);
+                    continue;
+                }
+
+                try {
+                    int code = response.code();
+                    long latency = System.currentTimeMillis() - chunkStart;
+                    if (code == 200 || code == 201) {
+                        // Last chunk: the response is the finished item
+                        DriveItem item = gson.fromJson(response.body().charStream(), DriveItem.class);
+                        stateFile.delete();
+                        sessionBytes += length;
+                        reportChunk(listener, source.getName(), size, size, latency, sessionBytes, startedAt);
+                        mainHandler.post(() -> listener.onComplete(item));
+                        return;
+                    } else if (code == 202) {
+                        UploadSession progress = gson.fromJson(response.body().charStream(), UploadSession.class);
+                        attempt = 0;
+                        sessionBytes += length;
+                        offset = firstExpectedOffset(progress, offset + length);
+                        state.offset = offset;
+                        state.write(stateFile);
+                        reportChunk(listener, source.getName(), offset, size, latency, sessionBytes, startedAt);
+                    } else if (code == 404) {
+                        offset = -1;
+                    } else if ((code == 429 || code >= 500) && ++attempt < MAX_CHUNK_ATTEMPTS) {
+                        Thread.sleep(Math.max(BASE_RETRY_DELAY_MS << (attempt - 1), retryAfterMs(response.header("Retry-After"))));
+                        offset = queryNextOffset(state.uploadUrl);
+                    } else {
+                        throw new IOException("Upload failed: HTTP " + code);
+                    }
+                } finally {
+                    response.close();
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, source.getName() + ": upload failed", e);
+            mainHandler.post(() -> listener.onError(source.getName(), e.getMessage()));
+        } catch (InterruptedException e) {
+            // Engine shut down; the saved session lets the next run continue
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void uploadEmpty(Source source, String parentId, Listener listener) {
+        try {
+            retrofit2.Response<DriveItem> response = service.uploadContent(parentId, source.getName(), "rename",
+                    RequestBody.create(OCTET_STREAM, new byte[0])).execute();
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("Upload failed: HTTP " + response.code());
+            }
+            DriveItem item = response.body();
+            mainHandler.post(() -> listener.onComplete(item));
+        } catch (IOException e) {
+            Log.w(TAG, source.getName() + ": upload failed", e);
+            mainHandler.post(() -> listener.onError(source.getName(), e.getMessage()));
+        }
+    }
+
+    private SessionState createSession(Source source, String parentId) throws IOException {
+        retrofit2.Response<UploadSession> response =
+                service.createUploadSession(parentId, source.getName(), new UploadSessionRequest()).execute();
+        if (!response.isSuccessful() || response.body() == null || response.body().uploadUrl == null) {
+            throw new IOException("Cannot create upload session: HTTP " + response.code());
+        }
+        SessionState state = new SessionState();
+        state.sourceKey = source.getKey();
+        state.parentId = parentId;
+        state.size = source.getSize();
+        state.uploadUrl = response.body().uploadUrl;
+        state.createdAt = System.currentTimeMillis();
+        return state;
+    }
+
+    /**
+     * The item a session produced, if its last chunk was stored but the answer never arrived:
+     * a file of the same name and size, modified since the session was created
+     */
+    private DriveItem findUploaded(Source source, String parentId, SessionState state) throws IOException {
+        retrofit2.Response<DriveItem> response = service.getChild(parentId, source.getName()).execute();
+        if (response.code() == 404) return null;
+        if (!response.isSuccessful() || response.body() == null) {
+            throw new IOException("Cannot look up " + source.getName() + ": HTTP " + response.code());
+        }
+        DriveItem item = response.body();
+        boolean ours = item.file != null && item.size == state.size
+                && GraphDateTime.parse(item.lastModifiedDateTime) >= state.createdAt - CLOCK_SKEW_MS;
+        return ours ? item : null;
+    }
+
+    /**
+     * Ask the session where to continue; -1 if the session is gone or expects nothing more
+     */
+    private long queryNextOffset(String uploadUrl) throws IOException {
+        try (okhttp3.Response response = contentClient.newCall(new Request.Builder().url(uploadUrl).get().build()).execute()) {
+            if (response.code() == 404) return -1;
+            if (!response.isSuccessful() || response.body() == null) throw new IOException("Session status: HTTP " + response.code());
+            UploadSession session = gson.fromJson(response.body().charStream(), UploadSession.class);
+            return firstExpectedOffset(session, -1);
+        }
+    }
+
+    private static long firstExpectedOffset(UploadSession session, long fallback) {
+        if (session == null || session.nextExpectedRanges == null || session.nextExpectedRanges.isEmpty()) return fallback;
+        String range = session.nextExpectedRanges.get(0);
+        int dash = range.indexOf('-');
+        try {
+            return Long.parseLong(dash >= 0 ? range.substring(0, dash) : range);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private void reportChunk(Listener listener, String name, long done, long total, long latencyMs,
+                             long sessionBytes, long startedAt) {
+        double rate = sessionBytes * 1000.0 / Math.max(1, System.currentTimeMillis() - startedAt);
+        mainHandler.post(() -> listener.onChunkUploaded(name, done, total, latencyMs, rate));
+    }
+
+    private static long retryAfterMs(String retryAfter) {
+        if (retryAfter == null) return 0;
+        try {
+            return Long.parseLong(retryAfter.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Streams one byte range of a channel into the request, 64 KB at a time.
+     * Positional reads make it safe to write again when OkHttp retries.
+     */
+    private static class ChannelRangeBody extends RequestBody {
+        private final FileChannel channel;
+        private final long offset;
+        private final long length;
+
+        ChannelRangeBody(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return OCTET_STREAM;
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            long position = offset;
+            long end = offset + length;
+            while (position < end) {
+                buffer.clear();
+                if (end - position < buffer.capacity()) buffer.limit((int) (end - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) throw new IOException("Source shorter than expected");
+                position += read;
+                buffer.flip();
+                while (buffer.hasRemaining()) sink.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * What is needed to resume a session after the process died
+     */
+    private static class SessionState {
+        String sourceKey;
+        String parentId;
+        long size;
+        String uploadUrl;
+        long offset;
+        long createdAt;  // device clock
+
+        void write(File file) throws IOException {
+            Properties props = new Properties();
+            props.setProperty("sourceKey", sourceKey);
+            props.setProperty("parentId", parentId);
+            props.setProperty("size", String.valueOf(size));
+            props.setProperty("uploadUrl", uploadUrl);
+            props.setProperty("offset", String.valueOf(offset));
+            props.setProperty("createdAt", String.valueOf(createdAt));
+            File tmp = new File(file.getPath() + ".tmp");
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                props.store(out, null);
+            }
+            if (!tmp.renameTo(file)) throw new IOException("Cannot replace " + file);
+        }
+
+        static SessionState read(File file) {
+            if (!file.exists()) return null;
+            Properties props = new Properties();
+            try (InputStream in = new FileInputStream(file)) {
+                props.load(in);
+                SessionState state = new SessionState();
+                state.sourceKey = props.getProperty("sourceKey");
+                state.parentId = props.getProperty("parentId");
+                state.size = Long.parseLong(props.getProperty("size"));
+                state.uploadUrl = props.getProperty("uploadUrl");
+                state.offset = Long.parseLong(props.getProperty("offset", "0"));
+                state.createdAt = Long.parseLong(props.getProperty("createdAt", "0"));
+                return state.uploadUrl != null && state.sourceKey != null && state.parentId != null ? state : null;
+            } catch (IOException | NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.onedriveexplorer.benchmark;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Synthetic Graph /children responses, shaped like the real ones: the fields the app reads
+ * plus the ones it skips (createdBy, fileSystemInfo, hashes...). The same arguments always
+ * give the same bytes, so runs on different commits parse identical input.
+ */
+public final class GraphPayloads {
+    private static final String DRIVE_ID = "b!Vv3l7u0QxUq8dM4cZ5rJ2fYq9wZp1sK3eT7hLm0nAa6XyB4cD5eF6gH7iJ8kL9mN";
+    private static final String PARENT_ID = "01BENCHPARENT0000000000000000000";
+    private static final String[][] KINDS = {
+            // extension, MIME type; null for folders
+            {null, null},
+            {"docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document"},
+            {"xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"},
+            {"pdf", "application/pdf"},
+            {"jpg", "image/jpeg"},
+            {"png", "image/png"},
+            {"mp4", "video/mp4"},
+            {"txt", "text/plain"},
+    };
+    private static final String[] WORDS = {
+            "Report", "Invoice", "Holiday", "Budget", "Scan", "Notes", "Draft", "Final",
+            "Meeting", "Photo", "Project", "Backup", "R\u00e9sum\u00e9", "Q3", "Summary", "Archive",
+    };
+
+    private GraphPayloads() {
+    }
+
+    /**
+     * One page of children; with more, a nextLink is included like a paged listing has
+     */
+    public static String children(int count, boolean more) {
+        Random random = new Random(count);
+        StringBuilder sb = new StringBuilder(count * 900 + 256);
+        sb.append("{\"@odata.context\":\"https://graph.microsoft.com/v1.0/$metadata#users('bench')/drive/items('")
+                .append(PARENT_ID).append("')/children\",\"value\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(',');
+            item(sb, i, random);
+        }
+        sb.append(']');
+        if (more) {
+            sb.append(",\"@odata.nextLink\":\"https://graph.microsoft.com/v1.0/me/drive/items/")
+                    .append(PARENT_ID).append("/children?$top=").append(count).append("&$skiptoken=UGFnZWQ9VFJVRSZwX0lEPTIwMA\"");
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void item(StringBuilder sb, int index, Random random) {
+        // About one in eight is a folder
+        String[] kind = KINDS[random.nextInt(KINDS.length)];
+        boolean folder = kind[0] == null;
+        String id = String.format(Locale.ROOT, "01BENCH%025X", index);
+        String tag = String.format(Locale.ROOT, "%08X-%04X-%04X-%04X-%012X", random.nextInt(), random.nextInt(0x10000),
+                random.nextInt(0x10000), random.nextInt(0x10000), random.nextLong() & 0xFFFFFFFFFFFFL);
+        String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + index
+                + (folder ? "" : "." + kind[0]);
+        long size = folder ? random.nextInt(1 << 30) : (long) (Math.exp(random.nextDouble() * 20));
+        String modified = String.format(Locale.ROOT, "20%02d-%02d-%02dT%02d:%02d:%02d.%03dZ", 15 + random.nextInt(10),
+                1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(24), random.nextInt(60),
+                random.nextInt(60), random.nextInt(1000));
+
+        sb.append("{\"@odata.etag\":\"\\\"{").append(tag).append("},2\\\"\"");
+        sb.append(",\"createdDateTime\":\"").append(modified).append('"');
+        sb.append(",\"cTag\":\"\\\"c:{").append(tag).append("},3\\\"\"");
+        sb.append(",\"eTag\":\"\\\"{").append(tag).append("},2\\\"\"");
+        sb.append(",\"id\":\"").append(id).append('"');
+        sb.append(",\"lastModifiedDateTime\":\"").append(modified).append('"');
+        sb.append(",\"name\":\"").append(name).append('"');
+        sb.append(",\"size\":").append(size);
+        sb.append(",\"webUrl\":\"https://bench-my.sharepoint.com/personal/bench/Documents/").append(name.replace(' ', '_')).append('"');
+        sb.append(",\"createdBy\":{\"user\":{\"email\":\"bench@example.com\",\"id\":\"1f2e3d4c\",\"displayName\":\"Bench User\"}}");
+        sb.append(",\"lastModifiedBy\":{\"user\":{\"email\":\"bench@example.com\",\"id\":\"1f2e3d4c\",\"displayName\":\"Bench User\"}}");
+        sb.append(",\"parentReference\":{\"driveType\":\"business\",\"driveId\":\"").append(DRIVE_ID)
+                .append("\",\"id\":\"").append(PARENT_ID).append("\",\"path\":\"/drive/root:/Bench\"}");
+        sb.append(",\"fileSystemInfo\":{\"createdDateTime\":\"").append(modified)
+                .append("\",\"lastModifiedDateTime\":\"").append(modified).append("\"}");
+        if (folder) {
+            sb.append(",\"folder\":{\"childCount\":").append(random.nextInt(500)).append('}');
+        } else {
+            sb.append(",\"@microsoft.graph.downloadUrl\":\"https://bench-my.sharepoint.com/personal/bench/_layouts/15/download.aspx?UniqueId=")
+                    .append(tag).append("&Translate=false&tempauth=eyJ0eXAiOiJKV1QiLCJhbGciOiJub25lIn0.").append(id).append('"');
+            sb.append(",\"file\":{\"mimeType\":\"").append(kind[1])
+                    .append("\",\"hashes\":{\"quickXorHash\":\"").append(tag.substring(0, 27)).append("=\"}}");
+        }
+        sb.append('}');
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.onedriveexplorer.benchmark;
+
+import com.example.onedriveexplorer.models.DriveItem;
+import com.example.onedriveexplorer.models.DriveItemResponse;
+import com.example.onedriveexplorer.navigation.CompactListing;
+import com.example.onedriveexplorer.navigation.FileNode;
+import com.example.onedriveexplorer.navigation.NodeCache;
+import com.example.onedriveexplorer.network.DriveItemStreamParser;
+import com.example.onedriveexplorer.network.GraphTypeAdapters;
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The cache side of NavigationManager.navigateTo, without the Android parts.
+ *
+ * hit: a cached folder is opened; lookup, LRU touch and the first screen of rows read from
+ * its CompactListing as the adapter binds them. miss: the folder's first page is parsed,
+ * cached with FileNode.cacheFirstPage and put in a NodeCache with the default budget, which
+ * trims it. firstScreen and scroll read rows from an already cached listing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class NavigationCacheBenchmark {
+    // Rows on a phone screen in list mode
+    private static final int SCREEN_ROWS = 15;
+    private static final int FOLDERS = 4;
+
+    @Param({"10", "1000", "100000"})
+    public int children;
+
+    private String json;
+    private DriveItemStreamParser parser;
+    private FileNode root;
+    private NodeCache hitCache;
+    private NodeCache missCache;
+    private DriveItem[] folders;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        json = GraphPayloads.children(children, false);
+        parser = new DriveItemStreamParser(new GsonBuilder().registerTypeAdapterFactory(GraphTypeAdapters.FACTORY).create());
+        DriveItemResponse page = parser.parse(new StringReader(json), 0, null);
+
+        DriveItem rootItem = new DriveItem();
+        rootItem.id = "root";
+        rootItem.folder = new DriveItem.Folder();
+        root = new FileNode(rootItem, null);
+
+        // Big enough that the hit path never evicts
+        hitCache = new NodeCache(Integer.MAX_VALUE, Long.MAX_VALUE);
+        missCache = new NodeCache();
+        hitCache.put(rootItem.id, root);
+        missCache.put(rootItem.id, root);
+        folders = new DriveItem[FOLDERS];
+        for (int i = 0; i < FOLDERS; i++) {
+            DriveItem folder = new DriveItem();
+            folder.id = "folder" + i;
+            folder.folder = new DriveItem.Folder();
+            folders[i] = folder;
+            FileNode node = new FileNode(folder, root);
+            node.cache(page.value);
+            node.markValidated();
+            hitCache.put(folder.id, node);
+        }
+    }
+
+    @Benchmark
+    public void hit(Blackhole bh) {
+        DriveItem folder = folders[next++ & (FOLDERS - 1)];
+        FileNode node = hitCache.get(folder.id);
+        hitCache.touch(node);
+        hitCache.recordAccess(node.isCached());
+        bh.consume(node.isStale(60_000));
+        readRows(node.cachedItems, 0, bh);
+    }
+
+    @Benchmark
+    public void miss(Blackhole bh) throws IOException {
+        DriveItem folder = folders[next++ & (FOLDERS - 1)];
+        FileNode node = new FileNode(folder, root);
+        missCache.put(folder.id, node);
+        missCache.recordAccess(false);
+        DriveItemResponse page = parser.parse(new StringReader(json), 0, null);
+        node.cacheFirstPage(page.value, page.nextLink);
+        node.markValidated();
+        missCache.trim(node);
+        readRows(node.cachedItems, 0, bh);
+        missCache.remove(folder.id);
+    }
+
+    @Benchmark
+    public void firstScreen(Blackhole bh) {
+        readRows(hitCache.get(folders[0].id).cachedItems, 0, bh);
+    }
+
+    @Benchmark
+    public void scroll(Blackhole bh) {
+        // A screenful anywhere in the listing, as after a fling
+        CompactListing listing = hitCache.get(folders[0].id).cachedItems;
+        int from = (int) ((next++ * 0x9E3779B1L & 0xFFFFFFFFL) % Math.max(1, listing.size()));
+        readRows(listing, from, bh);
+    }
+
+    private static void readRows(CompactListing listing, int from, Blackhole bh) {
+        int end = Math.min(listing.size(), from + SCREEN_ROWS);
+        for (int i = from; i < end; i++) bh.consume(listing.get(i));
+    }
+}
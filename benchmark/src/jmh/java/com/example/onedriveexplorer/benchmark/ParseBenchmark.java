@@ -0,0 +1,70 @@
+package com.example.onedriveexplorer.benchmark;
+
+import com.example.onedriveexplorer.models.DriveItemResponse;
+import com.example.onedriveexplorer.network.DriveItemStreamParser;
+import com.example.onedriveexplorer.network.GraphTypeAdapters;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Steady-state parse cost of one listing body, by number of children. The score is per
+ * listing; divide by children for per-item time, and gc.alloc.rate.norm by children for
+ * bytes allocated per item.
+ *
+ * streamAdapters is what the app does (DriveItemStreamParser with GraphTypeAdapters);
+ * streamReflection is the same parser on Gson's reflective adapters; treeReflection is the
+ * plain Gson.fromJson the app started with.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ParseBenchmark {
+
+    @Param({"10", "200", "1000", "10000", "100000"})
+    public int children;
+
+    private String json;
+    private DriveItemStreamParser adapters;
+    private DriveItemStreamParser reflection;
+    private Gson reflectionGson;
+
+    @Setup
+    public void setUp() {
+        json = GraphPayloads.children(children, true);
+        adapters = new DriveItemStreamParser(new GsonBuilder().registerTypeAdapterFactory(GraphTypeAdapters.FACTORY).create());
+        reflectionGson = new Gson();
+        reflection = new DriveItemStreamParser(reflectionGson);
+    }
+
+    @Benchmark
+    public DriveItemResponse streamAdapters() throws IOException {
+        return adapters.parse(new StringReader(json), 0, null);
+    }
+
+    @Benchmark
+    public DriveItemResponse streamReflection() throws IOException {
+        return reflection.parse(new StringReader(json), 0, null);
+    }
+
+    @Benchmark
+    public DriveItemResponse treeReflection() {
+        return reflectionGson.fromJson(new StringReader(json), DriveItemResponse.class);
+    }
+}
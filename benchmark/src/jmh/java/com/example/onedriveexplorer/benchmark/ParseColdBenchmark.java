@@ -0,0 +1,53 @@
+package com.example.onedriveexplorer.benchmark;
+
+import com.example.onedriveexplorer.models.DriveItemResponse;
+import com.example.onedriveexplorer.network.DriveItemStreamParser;
+import com.example.onedriveexplorer.network.GraphTypeAdapters;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The first listing a fresh process parses: Gson setup, adapter creation, class loading and
+ * interpreted code included, as on app start. Each fork measures one shot; many forks give
+ * the distribution. The payload is one default page (NavigationManager.DEFAULT_PAGE_SIZE).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class ParseColdBenchmark {
+    private static final int PAGE = 200;
+
+    private String json;
+
+    @Setup
+    public void setUp() {
+        json = GraphPayloads.children(PAGE, true);
+    }
+
+    @Benchmark
+    public DriveItemResponse adapters() throws IOException {
+        Gson gson = new GsonBuilder().registerTypeAdapterFactory(GraphTypeAdapters.FACTORY).create();
+        return new DriveItemStreamParser(gson).parse(new StringReader(json), 0, null);
+    }
+
+    @Benchmark
+    public DriveItemResponse reflection() throws IOException {
+        return new DriveItemStreamParser(new Gson()).parse(new StringReader(json), 0, null);
+    }
+}